@@ -0,0 +1,113 @@
+package sat;
+
+import java.io.File;
+import java.util.Arrays;
+
+import immutable.ImHashMap;
+import immutable.ImListMap;
+import immutable.ImMap;
+import sat.bench.Harness;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Preprocessor;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.NegLiteral;
+import sat.formula.PosLiteral;
+
+/**
+ * Benchmarks for parsing, the immutable data structures the solver is built
+ * on, DPLL substitution, preprocessing, and solving every file in sampleCNF/
+ * with each SolverMode. In package sat so that it can reach
+ * SATSolver.substitute.
+ *
+ * Run from the project directory, for example
+ * java -Dbench.filter=solve/CDCL -cp out sat.SATSolverBenchmark
+ * See Harness for the other settings.
+ */
+public class SATSolverBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Harness harness = new Harness();
+        File[] files = new File(System.getProperty("bench.cnf", "sampleCNF"))
+                .listFiles((dir, name) -> name.endsWith(".cnf"));
+        if (files == null) {
+            System.out.println("No sampleCNF directory, run from the project directory");
+            return;
+        }
+        Arrays.sort(files);
+
+        for (File f : files) {
+            final String path = f.getPath();
+            harness.run("parse/convertCNF/" + f.getName(), () -> SATSolverTest.convertCNF(path));
+            harness.run("parse/DimacsParser/" + f.getName(), () -> DimacsParser.parse(path));
+        }
+
+        benchmarkClauseReduce(harness);
+        benchmarkMaps(harness, "ImListMap", new ImListMap<String, Integer>());
+        benchmarkMaps(harness, "ImHashMap", new ImHashMap<String, Integer>());
+
+        for (File f : files) {
+            final Formula formula = SATSolverTest.convertCNF(f.getPath());
+            final Literal literal = formula.getClauses().first().chooseLiteral();
+            harness.run("substitute/" + f.getName(),
+                    () -> SATSolver.substitute(formula.getClauses(), literal));
+        }
+
+        for (SolverMode mode : SolverMode.values()) {
+            for (File f : files) {
+                final Formula formula = SATSolverTest.convertCNF(f.getPath());
+                harness.run("solve/" + mode + "/" + f.getName(), () -> SATSolver.solve(formula, mode));
+            }
+        }
+
+        for (File f : files) {
+            final IntFormula formula = DimacsParser.parse(f.getPath());
+            harness.run("preprocess/" + f.getName(), () -> new Preprocessor(formula).simplify());
+            final Formula objects = formula.decode();
+            harness.run("solve/CDCL+preprocess/" + f.getName(),
+                    () -> SATSolver.solve(objects, SolverMode.CDCL, true));
+        }
+    }
+
+    private static void benchmarkClauseReduce(Harness harness) {
+        Clause clause = new Clause();
+        for (int i = 0; i < 10; i++) {
+            clause = clause.add(PosLiteral.make("reduce" + i));
+        }
+        final Clause c = clause;
+        // the first literal added is the last one in the clause's list
+        final Literal satisfied = PosLiteral.make("reduce0");
+        final Literal falsified = NegLiteral.make("reduce0");
+        harness.run("clause/reduce/satisfied", () -> c.reduce(satisfied));
+        harness.run("clause/reduce/falsified", () -> c.reduce(falsified));
+    }
+
+    private static void benchmarkMaps(Harness harness, String name, final ImMap<String, Integer> empty) {
+        final int size = 1000;
+        final String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = Integer.toString(i);
+        }
+        harness.run("map/" + name + "/put" + size, () -> {
+            ImMap<String, Integer> m = empty;
+            for (String k : keys) {
+                m = m.put(k, 1);
+            }
+            return m;
+        });
+
+        ImMap<String, Integer> full = empty;
+        for (String k : keys) {
+            full = full.put(k, 1);
+        }
+        final ImMap<String, Integer> m = full;
+        harness.run("map/" + name + "/get" + size, () -> {
+            int found = 0;
+            for (String k : keys) {
+                if (m.get(k) != null) found++;
+            }
+            return found;
+        });
+    }
+}
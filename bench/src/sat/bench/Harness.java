@@ -0,0 +1,138 @@
+package sat.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark harness in the style of JMH, for running without a
+ * build tool.
+ *
+ * Each benchmark runs on a fresh thread for a number of warm-up
+ * iterations, whose results are discarded so that the JIT has compiled the
+ * hot code, followed by measurement iterations. Every iteration calls the
+ * benchmark repeatedly for a fixed wall-clock time. The report gives the
+ * mean throughput with its min and max over measurement iterations, and
+ * the allocation rate per operation and per second as counted by the JVM
+ * for the benchmark thread, which is what JMH's gc profiler reports as
+ * gc.alloc.rate.norm and gc.alloc.rate. Only that thread is counted:
+ * benchmarks that hand their work to other threads, such as the PORTFOLIO
+ * and CUBE_AND_CONQUER solves, report little more than the cost of
+ * starting them.
+ *
+ * Settings are read from system properties: bench.warmup and
+ * bench.iterations (iteration counts, default 5 each), bench.time
+ * (milliseconds per iteration, default 1000) and bench.filter (a regex
+ * that benchmark names must contain a match of).
+ */
+public class Harness {
+    /**
+     * A benchmark body. The result is consumed so that the JIT cannot
+     * eliminate the work that produced it.
+     */
+    public interface Op {
+        Object run() throws Exception;
+    }
+
+    // written with every result so that it escapes
+    private static volatile Object sink;
+
+    private final int warmup;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Pattern filter;
+    private final com.sun.management.ThreadMXBean threads;
+
+    /**
+     * Create a harness configured from system properties.
+     */
+    public Harness() {
+        warmup = Integer.getInteger("bench.warmup", 5);
+        iterations = Integer.getInteger("bench.iterations", 5);
+        iterationNanos = Long.getLong("bench.time", 1000) * 1000000L;
+        filter = Pattern.compile(System.getProperty("bench.filter", ""));
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        System.out.printf("%-45s %14s %14s %14s %12s %10s%n",
+                "Benchmark", "ops/s", "min", "max", "B/op", "MB/s");
+    }
+
+    /**
+     * Run and report one benchmark, unless its name is filtered out.
+     */
+    public void run(final String name, final Op op) {
+        if (!filter.matcher(name).find()) return;
+        final double[] result = new double[5];
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    measure(op, result);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        }, name);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (failure[0] != null) {
+            System.out.printf("%-45s failed: %s%n", name, failure[0]);
+        } else {
+            System.out.printf("%-45s %14.3f %14.3f %14.3f %12.0f %10.1f%n",
+                    name, result[0], result[1], result[2], result[3], result[4]);
+        }
+    }
+
+    /*
+     * Fill result with mean, min and max ops/s, bytes allocated per op and
+     * megabytes allocated per second, over the measurement iterations.
+     */
+    private void measure(Op op, double[] result) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            iteration(op);
+        }
+        long threadId = Thread.currentThread().getId();
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        for (int i = 0; i < iterations; i++) {
+            long bytes = threads.getThreadAllocatedBytes(threadId);
+            long started = System.nanoTime();
+            long ops = iteration(op);
+            long nanos = System.nanoTime() - started;
+            totalBytes += threads.getThreadAllocatedBytes(threadId) - bytes;
+            double throughput = ops * 1e9 / nanos;
+            sum += throughput;
+            min = Math.min(min, throughput);
+            max = Math.max(max, throughput);
+            totalOps += ops;
+            totalNanos += nanos;
+        }
+        result[0] = sum / iterations;
+        result[1] = min;
+        result[2] = max;
+        result[3] = (double) totalBytes / totalOps;
+        result[4] = totalBytes / 1e6 / (totalNanos / 1e9);
+    }
+
+    /*
+     * Call op until the iteration time is used up.
+     * @return number of calls made, at least one
+     */
+    private long iteration(Op op) throws Exception {
+        long deadline = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        do {
+            sink = op.run();
+            ops++;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+}
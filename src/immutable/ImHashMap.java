@@ -0,0 +1,233 @@
+package immutable;
+
+import java.util.ArrayDeque;
+
+/**
+ * Implementation of immutable generic map using a hash array mapped trie
+ * (HAMT). See ImMap for specification.
+ *
+ * Keys are placed in a 32-way trie by successive 5-bit slices of their hash
+ * codes. Each node keeps a 32-bit bitmap of the slots in use and a compact
+ * array holding only those slots, so get, put and containsKey visit at most
+ * 7 levels whatever the size of the map. put copies only the nodes on the
+ * path to the key; the rest of the trie is shared with the old map.
+ * Keys whose hash codes are fully equal are kept together in a collision node.
+ */
+public class ImHashMap<K, V> implements ImMap<K, V> {
+    /*
+     * Rep invariant
+     *     size == number of key/value pairs reachable from root
+     *     no key or value is null, and no two keys are equal
+     *     a key stored at depth d is in the slot given by bits 5d..5d+4 of
+     *     its hash code
+     */
+    private final Node root;
+    private final int size;
+
+    public ImHashMap() {
+        this(BitmapNode.EMPTY, 0);
+    }
+
+    // Internal constructor.
+    private ImHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public boolean containsKey(Object k) {
+        return get(k) != null;
+    }
+
+    public V get(Object k) {
+        int hash = k.hashCode();
+        Node node = root;
+        int shift = 0;
+        // walk down the trie; the depth is bounded by the hash width
+        while (true) {
+            if (node instanceof CollisionNode) {
+                return cast(((CollisionNode) node).find(hash, k));
+            }
+            BitmapNode b = (BitmapNode) node;
+            int bit = BitmapNode.bit(hash, shift);
+            if ((b.bitmap & bit) == 0)
+                return null;
+            int i = b.index(bit);
+            Object key = b.array[2 * i];
+            Object value = b.array[2 * i + 1];
+            if (key == null) {
+                node = (Node) value;
+                shift += 5;
+            } else {
+                return key.equals(k) ? ImHashMap.<V>cast(value) : null;
+            }
+        }
+    }
+
+    public ImMap<K, V> put(K key, V value) {
+        assert key != null : "HashMap.put(null, _)";
+        assert value != null : "HashMap.put(_, null)";
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(0, key.hashCode(), key, value, added);
+        if (newRoot == root)
+            return this;
+        return new ImHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get string representation of this map.
+     * @return the bindings as key->value, separated by commas, with the
+     *    entire map surrounded by brackets, in the same form as ImListMap
+     */
+    public String toString() {
+        StringBuilder s = new StringBuilder("[");
+        ArrayDeque<Node> pending = new ArrayDeque<Node>();
+        pending.push(root);
+        boolean first = true;
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            Object[] array = node instanceof CollisionNode
+                    ? ((CollisionNode) node).array : ((BitmapNode) node).array;
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i] == null) {
+                    pending.push((Node) array[i + 1]);
+                } else {
+                    if (!first) s.append(", ");
+                    s.append(array[i]).append("->").append(array[i + 1]);
+                    first = false;
+                }
+            }
+        }
+        return s.append("]").toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object o) {
+        return (T) o;
+    }
+
+    private interface Node {
+        /**
+         * @return node with key bound to value, or this if it already was;
+         *         added[0] is set iff key was not bound before
+         */
+        Node put(int shift, int hash, Object key, Object value, boolean[] added);
+    }
+
+    /*
+     * Interior node: array holds, for each bit set in bitmap in increasing
+     * order, either a key/value pair or null followed by a child node.
+     */
+    private static class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        public Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = bit(hash, shift);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] a = new Object[array.length + 2];
+                System.arraycopy(array, 0, a, 0, 2 * i);
+                a[2 * i] = key;
+                a[2 * i + 1] = value;
+                System.arraycopy(array, 2 * i, a, 2 * i + 2, array.length - 2 * i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, a);
+            }
+
+            Object k = array[2 * i];
+            Object v = array[2 * i + 1];
+            Object[] a = array.clone();
+            if (k == null) {
+                Node child = ((Node) v).put(shift + 5, hash, key, value, added);
+                if (child == v) return this;
+                a[2 * i + 1] = child;
+            } else if (k.equals(key)) {
+                if (v == value) return this;
+                a[2 * i + 1] = value;
+            } else {
+                a[2 * i] = null;
+                a[2 * i + 1] = pair(shift + 5, k, v, hash, key, value);
+                added[0] = true;
+            }
+            return new BitmapNode(bitmap, a);
+        }
+
+        /*
+         * Node holding two distinct keys below the given shift.
+         */
+        private static Node pair(int shift, Object k1, Object v1, int h2, Object k2, Object v2) {
+            int h1 = k1.hashCode();
+            if (h1 == h2)
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+            boolean[] ignored = new boolean[1];
+            return EMPTY.put(shift, h1, k1, v1, ignored).put(shift, h2, k2, v2, ignored);
+        }
+    }
+
+    /*
+     * Leaf node for keys that share the same full hash code: array holds
+     * their key/value pairs.
+     */
+    private static class CollisionNode implements Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object find(int h, Object key) {
+            if (h != hash) return null;
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i].equals(key)) return array[i + 1];
+            }
+            return null;
+        }
+
+        public Node put(int shift, int h, Object key, Object value, boolean[] added) {
+            if (h != hash) {
+                // push this node one level down next to the new key
+                Node wrapped = new BitmapNode(BitmapNode.bit(hash, shift), new Object[] { null, this });
+                return wrapped.put(shift, h, key, value, added);
+            }
+            for (int i = 0; i < array.length; i += 2) {
+                if (array[i].equals(key)) {
+                    if (array[i + 1] == value) return this;
+                    Object[] a = array.clone();
+                    a[i + 1] = value;
+                    return new CollisionNode(hash, a);
+                }
+            }
+            Object[] a = new Object[array.length + 2];
+            System.arraycopy(array, 0, a, 0, array.length);
+            a[array.length] = key;
+            a[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, a);
+        }
+    }
+}
@@ -6,6 +6,8 @@
  */
 package immutable;
 
+import java.util.ArrayList;
+
 /**
  * Implementation of immutable generic map using association list. See Map for
  * specification.
@@ -29,12 +31,11 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     void checkRep(ImList<Binding> bs) {
-        if (!bs.isEmpty()) {
-            Binding b = bs.first();
+        for (ImList<Binding> l = bs; !l.isEmpty(); l = l.rest()) {
+            Binding b = l.first();
             assert b.key != null : "ListMap, Rep invariant: keys non-null";
             assert b.value != null : "ListMap, Rep invariant: values non-null";
-            assert !new ImListMap<K, V>(bs.rest()).containsKey(b.key);
-            checkRep(bs.rest());
+            assert !new ImListMap<K, V>(l.rest()).containsKey(b.key);
         }
     }
 
@@ -77,16 +78,15 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     /*
-     * search through list recursively to find binding with matching key
+     * search through list to find binding with matching key
      */
     private Binding get(ImList<Binding> bindings, Object key) {
-        if (bindings.size() == 0)
-            return null;
-        Binding b = bindings.first();
-        if (b.key.equals(key))
-            return b;
-        else
-            return get(bindings.rest(), key);
+        for (ImList<Binding> l = bindings; l.size() != 0; l = l.rest()) {
+            Binding b = l.first();
+            if (b.key.equals(key))
+                return b;
+        }
+        return null;
     }
 
     public ImMap<K, V> put(K key, V value) {
@@ -94,19 +94,28 @@ public class ImListMap<K, V> implements ImMap<K, V> {
     }
 
     /*
-     * recursively construct new list with binding for given key replaced or
-     * added
+     * construct new list with binding for given key replaced in place, or
+     * added at the end
      */
     private ImList<Binding> put(ImList<Binding> bindings, K key, V value) {
-        if (bindings.size() == 0)
-            return new NonEmptyImList<Binding>(new Binding(key, value));
-        Binding b = bindings.first();
-        if (b.key.equals(key)) {
-            b = new Binding(key, value);
-            return bindings.rest().add(b);
-        } else {
-            return put(bindings.rest(), key, value).add(b);
+        // walk to the binding for key, remembering the bindings before it
+        ArrayList<Binding> prefix = new ArrayList<Binding>();
+        ImList<Binding> l = bindings;
+        while (l.size() != 0 && !l.first().key.equals(key)) {
+            prefix.add(l.first());
+            l = l.rest();
+        }
+
+        Binding b = new Binding(key, value);
+        ImList<Binding> result;
+        if (l.size() == 0)
+            result = new NonEmptyImList<Binding>(b);
+        else
+            result = l.rest().add(b);
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+            result = result.add(prefix.get(i));
         }
+        return result;
     }
 
     public int size() {
@@ -7,6 +7,7 @@
  */
 package immutable;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 
 public class NonEmptyImList<E> implements ImList<E> {
@@ -53,14 +54,21 @@ public class NonEmptyImList<E> implements ImList<E> {
 
     public ImList<E> remove(E e) {
         assert e != null: "NonEmptyList.remove(null)";
-        if (element.equals(e)) {
-            return rest;
+        // find the first occurrence, remembering the elements before it
+        ArrayList<E> prefix = new ArrayList<E>();
+        ImList<E> l = this;
+        while (!l.isEmpty() && !l.first().equals(e)) {
+            prefix.add(l.first());
+            l = l.rest();
         }
-        else {
-            ImList<E> l = rest.remove (e);
-            if (l == rest) return this;
-            else return new NonEmptyImList<E> (element, l);
+        if (l.isEmpty()) return this;
+
+        // share the tail after the removed element, and copy the prefix
+        ImList<E> result = l.rest();
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+            result = result.add(prefix.get(i));
         }
+        return result;
     }
 
     public ImList<E> rest() {
@@ -69,7 +77,10 @@ public class NonEmptyImList<E> implements ImList<E> {
 
     public boolean contains (E e) {
         assert e != null: "NonEmptyList.contains(null)";
-        return element.equals(e) || rest.contains(e);
+        for (ImList<E> l = this; !l.isEmpty(); l = l.rest()) {
+            if (l.first().equals(e)) return true;
+        }
+        return false;
     }
 
     public int size () {
@@ -98,7 +109,13 @@ public class NonEmptyImList<E> implements ImList<E> {
         if (!(o instanceof ImList)) return false;
         ImList l = (ImList) o;
         if (l.size() != size()) return false;
-        return first().equals(l.first()) && rest().equals(l.rest());
+        ImList<E> m = this;
+        while (!m.isEmpty()) {
+            if (!m.first().equals(l.first())) return false;
+            m = m.rest();
+            l = l.rest();
+        }
+        return true;
     }
 
     /**
@@ -109,7 +126,11 @@ public class NonEmptyImList<E> implements ImList<E> {
      */
     @Override
     public int hashCode () {
-        return rest.hashCode() + (element == null ? 0 : element.hashCode());
+        int hash = 0;
+        for (ImList<E> l = this; !l.isEmpty(); l = l.rest()) {
+            hash += l.first().hashCode();
+        }
+        return hash;
     }
 
     /**
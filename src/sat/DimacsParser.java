@@ -0,0 +1,288 @@
+package sat;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import sat.cdcl.ClauseSink;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.maxsat.MaxSatSolver;
+import sat.maxsat.SoftClauseSink;
+
+/**
+ * Streaming parser for CNF files in DIMACS format, and weighted (WCNF)
+ * files of MaxSAT problems.
+ *
+ * The file is memory-mapped and scanned byte by byte; literals are read
+ * straight into ints without creating a String per token, and each clause is
+ * handed to a ClauseSink as soon as its terminating 0 is read. Comment lines
+ * ('c') are skipped, the problem line ('p cnf vars clauses') is read when the
+ * parser is created so callers can presize their buffers, and a '%' line ends
+ * the input, as in the SATLIB benchmark files.
+ *
+ * In a WCNF file each clause starts with its weight. The problem line
+ * 'p wcnf vars clauses top' makes clauses of weight top or more hard; the
+ * newer format has no problem line and starts hard clauses with 'h'
+ * instead of a weight.
+ */
+public class DimacsParser {
+    // files are mapped in windows of at most this many bytes
+    private static final long WINDOW = 1 << 30;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private int numVars;
+    private int numClauses;
+    private boolean weighted;
+    // weight from which clauses of a WCNF file are hard
+    private long top = Long.MAX_VALUE;
+    // the byte under the cursor, or -1 at end of input
+    private int current;
+
+    /**
+     * Open a DIMACS file and read everything up to and including its problem
+     * line, if it has one.
+     * @throws IOException if the file cannot be read or its header is
+     *         malformed
+     */
+    public DimacsParser(String file) throws IOException {
+        channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        fileSize = channel.size();
+        windowStart = 0;
+        map();
+        advance();
+        readHeader();
+    }
+
+    /**
+     * Parse a whole DIMACS file into primitive form, presized from its
+     * problem line.
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static IntFormula parse(String file) throws IOException {
+        DimacsParser parser = new DimacsParser(file);
+        try {
+            IntFormula formula = new IntFormula(parser.numVars(), parser.numClauses(),
+                    3 * parser.numClauses());
+            parser.readClauses(formula);
+            return formula;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Parse a whole WCNF file into a MaxSAT solver.
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static MaxSatSolver parseWeighted(String file) throws IOException {
+        DimacsParser parser = new DimacsParser(file);
+        try {
+            MaxSatSolver solver = new MaxSatSolver();
+            parser.readWeightedClauses(solver, solver);
+            return solver;
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * @return number of variables declared by the problem line, or 0 if
+     *         there is none
+     */
+    public int numVars() {
+        return numVars;
+    }
+
+    /**
+     * @return number of clauses declared by the problem line, or 0 if there
+     *         is none
+     */
+    public int numClauses() {
+        return numClauses;
+    }
+
+    /**
+     * @return true iff the problem line is that of a WCNF file
+     */
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    /**
+     * Stream every remaining clause of the file into sink, encoded as in Lit.
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public void readClauses(ClauseSink sink) throws IOException {
+        int[] lits = new int[16];
+        int size = 0;
+        while (true) {
+            skipWhitespace();
+            if (current < 0 || current == '%') break;
+            if (current == 'c') {
+                skipLine();
+                continue;
+            }
+            int dimacs = readInt();
+            if (dimacs == 0) {
+                sink.addClause(lits, 0, size);
+                size = 0;
+            } else {
+                if (size == lits.length) lits = Arrays.copyOf(lits, size * 2);
+                lits[size++] = Lit.fromDimacs(dimacs);
+            }
+        }
+        // tolerate a last clause without its terminating 0
+        if (size > 0) sink.addClause(lits, 0, size);
+    }
+
+    /**
+     * Stream every remaining clause of a WCNF file, encoded as in Lit, into
+     * hard if it is hard and into soft otherwise.
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public void readWeightedClauses(ClauseSink hard, SoftClauseSink soft) throws IOException {
+        int[] lits = new int[16];
+        while (true) {
+            skipWhitespace();
+            if (current < 0 || current == '%') break;
+            if (current == 'c') {
+                skipLine();
+                continue;
+            }
+            long weight;
+            if (current == 'h') {
+                advance();
+                weight = top;
+            } else {
+                weight = readLong();
+                if (weight < 0) throw error("negative weight");
+            }
+            int size = 0;
+            while (true) {
+                int dimacs = readInt();
+                if (dimacs == 0) break;
+                if (size == lits.length) lits = Arrays.copyOf(lits, size * 2);
+                lits[size++] = Lit.fromDimacs(dimacs);
+            }
+            if (weight >= top) hard.addClause(lits, 0, size);
+            // a clause of weight 0 costs nothing either way
+            else if (weight > 0) soft.addSoftClause(lits, 0, size, weight);
+        }
+    }
+
+    /**
+     * Release the mapped file.
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readHeader() throws IOException {
+        while (true) {
+            skipWhitespace();
+            if (current == 'c') {
+                skipLine();
+            } else if (current == 'p') {
+                advance();
+                skipWhitespace();
+                if (current == 'w') {
+                    weighted = true;
+                    advance();
+                }
+                for (char expected : "cnf".toCharArray()) {
+                    if (current != expected) throw error("expected 'p cnf' or 'p wcnf'");
+                    advance();
+                }
+                numVars = readInt();
+                numClauses = readInt();
+                if (numVars < 0 || numClauses < 0) throw error("negative count in problem line");
+                if (weighted) {
+                    // top is optional: without it, every clause is soft
+                    skipBlanks();
+                    if (current >= '0' && current <= '9') top = readLong();
+                }
+                return;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Read a signed decimal integer, skipping leading whitespace.
+     */
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value > Integer.MAX_VALUE || value < -Integer.MAX_VALUE) throw error("number out of range");
+        return (int) value;
+    }
+
+    /*
+     * Read a signed decimal long, skipping leading whitespace.
+     */
+    private long readLong() throws IOException {
+        skipWhitespace();
+        boolean negative = false;
+        if (current == '-') {
+            negative = true;
+            advance();
+        }
+        if (current < '0' || current > '9') throw error("expected a number");
+        long value = 0;
+        while (current >= '0' && current <= '9') {
+            if (value > (Long.MAX_VALUE - 9) / 10) throw error("number out of range");
+            value = value * 10 + (current - '0');
+            advance();
+        }
+        return negative ? -value : value;
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (current == ' ' || current == '\n' || current == '\r' || current == '\t') {
+            advance();
+        }
+    }
+
+    // spaces within a line
+    private void skipBlanks() throws IOException {
+        while (current == ' ' || current == '\t') {
+            advance();
+        }
+    }
+
+    private void skipLine() throws IOException {
+        while (current >= 0 && current != '\n') {
+            advance();
+        }
+    }
+
+    private void advance() throws IOException {
+        if (!window.hasRemaining()) {
+            if (windowStart + window.capacity() >= fileSize) {
+                current = -1;
+                return;
+            }
+            windowStart += window.capacity();
+            map();
+        }
+        current = window.get() & 0xff;
+    }
+
+    private void map() throws IOException {
+        long length = Math.min(WINDOW, fileSize - windowStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+    }
+
+    private IOException error(String message) {
+        long offset = windowStart + window.position() - 1;
+        return new IOException("DIMACS: " + message + " at byte " + offset);
+    }
+}
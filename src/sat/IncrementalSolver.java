@@ -0,0 +1,121 @@
+package sat;
+
+import immutable.EmptyImList;
+import immutable.ImList;
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Result;
+import sat.cdcl.UnsatCore;
+import sat.env.Environment;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.PseudoBoolean;
+
+/**
+ * A stateful SAT solver for a sequence of closely related problems.
+ *
+ * Unlike SATSolver.solve, which starts from scratch on every call, an
+ * IncrementalSolver accumulates clauses and keeps what it learnt: clauses
+ * and pseudo-Boolean constraints can be added between calls, and each call can make assumptions, literals
+ * that are true for that call only. Learnt clauses and heuristic state are
+ * kept from call to call, so each query only pays for what is new in it.
+ */
+public class IncrementalSolver {
+    // numbers the variables of the clauses, constraints and assumptions
+    // added so far
+    private final IntFormula vars = new IntFormula();
+    private final CDCLSolver solver = new CDCLSolver(vars);
+
+    /**
+     * Create a solver with no clauses.
+     */
+    public IncrementalSolver() {
+    }
+
+    /**
+     * Create a solver holding the clauses and constraints of formula.
+     * Requires: formula is non-null
+     */
+    public IncrementalSolver(Formula formula) {
+        addFormula(formula);
+    }
+
+    /**
+     * Add a clause to the problem, for every later call of solve.
+     * Requires: clause is non-null
+     */
+    public void addClause(Clause clause) {
+        int[] lits = new int[clause.size()];
+        int i = 0;
+        for (Literal l : clause) {
+            lits[i++] = vars.toLit(l);
+        }
+        solver.addClause(lits);
+    }
+
+    /**
+     * Add a pseudo-Boolean or cardinality constraint to the problem, for
+     * every later call of solve.
+     * Requires: c is non-null
+     */
+    public void addConstraint(PseudoBoolean c) {
+        solver.addConstraint(vars.toConstraint(c));
+    }
+
+    /**
+     * Add every clause and constraint of formula to the problem.
+     * Requires: formula is non-null
+     */
+    public void addFormula(Formula formula) {
+        for (Clause c : formula.getClauses()) {
+            addClause(c);
+        }
+        for (PseudoBoolean c : formula.getConstraints()) {
+            addConstraint(c);
+        }
+    }
+
+    /**
+     * Solve the clauses and constraints added so far with the given
+     * literals made true.
+     *
+     * @return an environment binding every variable met so far, for which
+     *         the clauses, constraints and assumptions evaluate to
+     *         Bool.TRUE, or null if no such environment exists.
+     */
+    public Environment solve(Literal... assumptions) {
+        int[] lits = new int[assumptions.length];
+        for (int i = 0; i < assumptions.length; i++) {
+            lits[i] = vars.toLit(assumptions[i]);
+        }
+        if (solver.search(lits) != Result.SAT) return null;
+        return vars.toEnvironment(solver.model());
+    }
+
+    /**
+     * Explain why the last call of solve returned null.
+     * Requires: it did
+     * @param minimize whether to shrink the result to a minimal set, which
+     *            costs one solve per literal in it
+     * @return assumptions of that call that have no solution together with
+     *         the clauses and constraints; empty if those alone have none
+     */
+    public ImList<Literal> failedAssumptions(boolean minimize) {
+        int[] failed = solver.failedAssumptions();
+        if (minimize) failed = UnsatCore.minimize(solver, failed);
+        ImList<Literal> out = new EmptyImList<Literal>();
+        for (int lit : failed) {
+            out = out.add(vars.toLiteral(lit));
+        }
+        return out;
+    }
+
+    /**
+     * @return true iff the clauses and constraints added so far are already
+     *         known to be unsatisfiable under any assumptions
+     */
+    public boolean isUnsatisfiable() {
+        return !solver.isOk();
+    }
+}
@@ -0,0 +1,128 @@
+package sat;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.Result;
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Formula;
+
+/**
+ * Enumerates the solutions of a formula one at a time, each found only
+ * when asked for.
+ *
+ * A single CDCLSolver is used for the whole enumeration: after each
+ * solution a blocking clause that rules it out is added, and the search
+ * carries on with everything learnt so far, rather than starting over.
+ *
+ * Enumerating every solution, the blocking clause only needs the negations
+ * of the decisions that led to the solution, since everything else
+ * followed from them; it is usually far shorter than the solution.
+ * Enumerating solutions projected onto some variables, each distinct
+ * assignment of just those variables is returned once, and is blocked by
+ * the negation of its own literals.
+ */
+public class ModelEnumerator implements Iterator<Environment> {
+    private final IntFormula vars;
+    private final CDCLSolver solver;
+    // variables to project onto, or null to return complete solutions
+    private final int[] projection;
+    private Environment next;
+    private boolean exhausted;
+    private long count;
+
+    /*
+     * Rep invariant:
+     *     next is non-null only if !exhausted
+     *     the solver's clauses rule out every solution returned so far and
+     *     next
+     */
+
+    /**
+     * Enumerate every solution of formula, each binding every variable of
+     * formula.
+     * Requires: formula is non-null
+     */
+    public ModelEnumerator(Formula formula) {
+        vars = IntFormula.encode(formula);
+        solver = new CDCLSolver(vars);
+        projection = null;
+    }
+
+    /**
+     * Enumerate the distinct assignments of the given variables that can
+     * be extended to a solution of formula, each binding just those
+     * variables. Variables that do not occur in formula take both values.
+     * Requires: formula and projection are non-null
+     */
+    public ModelEnumerator(Formula formula, Variable... projection) {
+        vars = IntFormula.encode(formula);
+        this.projection = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            this.projection[i] = vars.indexOf(projection[i]);
+        }
+        solver = new CDCLSolver(vars);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !exhausted) advance();
+        return next != null;
+    }
+
+    /**
+     * @return the next solution, different from every solution returned
+     *         before
+     * @throws NoSuchElementException if there is none left
+     */
+    @Override
+    public Environment next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Environment out = next;
+        next = null;
+        return out;
+    }
+
+    /**
+     * @return number of solutions returned or found so far
+     */
+    public long count() {
+        return count;
+    }
+
+    /*
+     * Find the next solution, if any, and block it.
+     */
+    private void advance() {
+        if (solver.search() != Result.SAT) {
+            exhausted = true;
+            return;
+        }
+        count++;
+        boolean[] model = solver.model();
+        if (projection == null) {
+            next = vars.toEnvironment(model);
+            int[] blocking = solver.modelDecisions();
+            for (int i = 0; i < blocking.length; i++) {
+                blocking[i] = Lit.not(blocking[i]);
+            }
+            solver.addClause(blocking);
+            return;
+        }
+
+        Environment env = new Environment();
+        int[] blocking = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            int var = projection[i];
+            Variable v = vars.getVariable(var);
+            env = model[var] ? env.putTrue(v) : env.putFalse(v);
+            blocking[i] = Lit.make(var, model[var]);
+        }
+        next = env;
+        solver.addClause(blocking);
+    }
+}
@@ -1,70 +1,337 @@
 package sat;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
 import immutable.EmptyImList;
 import immutable.ImList;
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Preprocessor;
+import sat.cdcl.Result;
+import sat.cdcl.Trail;
+import sat.cdcl.UnsatCore;
+import sat.count.ApproximateCounter;
+import sat.count.ExactCounter;
+import sat.encoding.ConstraintEncoder;
 import sat.env.Environment;
+import sat.env.Variable;
+import sat.lookahead.LookaheadSolver;
+import sat.maxsat.MaxSatSolver;
+import sat.parallel.CubeAndConquer;
+import sat.parallel.PortfolioSolver;
+import sat.sls.LocalSearch;
 import sat.formula.*;
 
 public class SATSolver {
+    // flips of local search before SLS mode falls back to CDCL
+    private static final long SLS_MIN_FLIPS = 10000;
+    private static final long SLS_MAX_FLIPS = 10000000;
 
     public static Environment solve(Formula formula) {
+        if (!formula.getConstraints().isEmpty()) return solve(formula, SolverMode.DPLL);
         ImList<Clause> formulaClauses = formula.getClauses();
-        Environment env = new Environment();
-        Environment result = solve(formulaClauses, env);
+        // number the variables so assignments can live on an array-indexed trail
+        IntFormula vars = IntFormula.encode(formula);
+        Trail trail = new Trail(vars.numVars());
+        if (!solve(formulaClauses, vars, trail)) {
+            return null;
+        }
+
+        return trail.toEnvironment(vars);
+    }
 
-        return result;
+    /**
+     * Solve the problem with the given search engine.
+     *
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public static Environment solve(Formula formula, SolverMode mode) {
+        if (mode == SolverMode.DPLL && formula.getConstraints().isEmpty()) return solve(formula);
+        IntFormula f = IntFormula.encode(formula);
+        boolean[] model = solve(f, mode);
+        return model == null ? null : f.toEnvironment(model);
     }
 
+    /**
+     * Simplify the problem with a Preprocessor, then solve what is left with
+     * the given search engine.
+     *
+     * @return an environment for which the problem evaluates to Bool.TRUE,
+     *         binding every variable of the problem, or null if no such
+     *         environment exists.
+     */
+    public static Environment solve(Formula formula, SolverMode mode, boolean preprocess) {
+        if (!preprocess) return solve(formula, mode);
+        IntFormula f = IntFormula.encode(formula);
+        // the preprocessor only knows clauses
+        Preprocessor preprocessor = new Preprocessor(ConstraintEncoder.toCnf(f));
+        if (!preprocessor.simplify()) return null;
+
+        boolean[] model = solve(preprocessor.getFormula(), mode);
+        if (model == null) return null;
+        return f.toEnvironment(Arrays.copyOf(preprocessor.extend(model), f.numVars()));
+    }
 
-    private static Environment solve(ImList<Clause> clauses, Environment env) {
-        
-        // no clauses, the formula is trivially satisfiable.
-        if (clauses.isEmpty()) {
-            return env;
+    /*
+     * Solve a formula in primitive form with the given search engine. The
+     * engines that only take clauses get the CNF encoding of a formula with
+     * constraints, whose fresh variables are left out of the solution.
+     */
+    private static boolean[] solve(IntFormula f, SolverMode mode) {
+        // CDCL, and the engines built on it, propagate constraints themselves
+        boolean propagates = mode == SolverMode.CDCL || mode == SolverMode.PORTFOLIO
+                || mode == SolverMode.CUBE_AND_CONQUER;
+        if (!propagates && !f.getConstraints().isEmpty()) {
+            boolean[] model = solve(ConstraintEncoder.toCnf(f), mode);
+            return model == null ? null : Arrays.copyOf(model, f.numVars());
         }
+        switch (mode) {
+            case CDCL: {
+                CDCLSolver solver = new CDCLSolver(f);
+                return solver.search() == Result.SAT ? solver.model() : null;
+            }
+            case PORTFOLIO:
+                return new PortfolioSolver().solve(f);
+            case CUBE_AND_CONQUER:
+                return new CubeAndConquer().solve(f);
+            case LOOKAHEAD:
+                return new LookaheadSolver(f).solve();
+            case SLS:
+                return solveLocal(f);
+            default: {
+                // the clauses of f keep its names, so the trail is numbered as f
+                Trail trail = new Trail(f.numVars());
+                return solve(f.decode().getClauses(), f, trail) ? trail.model() : null;
+            }
+        }
+    }
+
+    /*
+     * Local search with a budget that grows with the formula, then CDCL
+     * from its best assignment, so that unsatisfiable formulas are decided
+     * too.
+     */
+    private static boolean[] solveLocal(IntFormula f) {
+        LocalSearch sls = new LocalSearch(f, new Random());
+        long flips = Math.min(SLS_MAX_FLIPS, Math.max(SLS_MIN_FLIPS, 10L * f.getClauses().end()));
+        boolean[] model = sls.solve(flips);
+        if (model != null) return model;
 
-        Clause smallestClause = clauses.first();
+        CDCLSolver solver = new CDCLSolver(f);
+        solver.setPhases(sls.bestAssignment());
+        return solver.search() == Result.SAT ? solver.model() : null;
+    }
+
+    /**
+     * Enumerate every solution of a problem. Solutions are found as the
+     * iteration reaches them, so it can stop early at no extra cost.
+     *
+     * @return the environments, each binding every variable of formula,
+     *         for which formula evaluates to Bool.TRUE, each once
+     */
+    public static Iterable<Environment> enumerate(Formula formula) {
+        return () -> new ModelEnumerator(formula);
+    }
 
-        for (Clause cl: clauses) {
-            // Empty clause, the clause is unsatisfiable.
-            if (cl.isEmpty()) {
-                return null;
+    /**
+     * Enumerate the solutions of a problem projected onto some of its
+     * variables.
+     *
+     * @return the environments binding just the variables of projection
+     *         that can be extended to a solution of formula, each once
+     */
+    public static Iterable<Environment> enumerate(Formula formula, Variable... projection) {
+        return () -> new ModelEnumerator(formula, projection);
+    }
+
+    /**
+     * Count the solutions of a problem exactly.
+     *
+     * Requires: formula has no constraints
+     * @return the number of environments binding exactly the variables of
+     *         formula for which formula evaluates to Bool.TRUE
+     * @throws IllegalArgumentException if formula has constraints
+     */
+    public static BigInteger countSolutions(Formula formula) {
+        return new ExactCounter(IntFormula.encode(formula)).count();
+    }
+
+    /**
+     * Estimate the number of solutions of a problem, for problems with too
+     * many to count exactly. The hashing uses ApproximateCounter's default
+     * short XORs, which keep it fast but give up its guarantee; for that,
+     * use an ApproximateCounter with density 1/2.
+     *
+     * Requires: epsilon > 0 and 0 < delta < 1, and formula has no
+     *           constraints
+     * @return an estimate of countSolutions(formula), usually within a
+     *         factor 1 + epsilon of it (with probability at least
+     *         1 - delta only with dense XORs; see ApproximateCounter)
+     * @throws IllegalArgumentException if formula has constraints
+     */
+    public static BigInteger estimateSolutions(Formula formula, double epsilon, double delta) {
+        return new ApproximateCounter(IntFormula.encode(formula), new Random()).count(epsilon, delta);
+    }
+
+    /**
+     * Solve a weighted partial MaxSAT problem.
+     *
+     * @return an environment binding every variable of problem that
+     *         satisfies all its hard clauses and constraints and violates
+     *         soft clauses of least total weight, or null if the hard part
+     *         has no solution
+     */
+    public static Environment solveMaxSat(WeightedFormula problem) {
+        IntFormula vars = IntFormula.encode(problem.getHard());
+        ArrayList<int[]> soft = new ArrayList<int[]>();
+        for (Clause c : problem.getSoftClauses()) {
+            int[] lits = new int[c.size()];
+            int i = 0;
+            for (Literal l : c) {
+                lits[i++] = vars.toLit(l);
             }
-            
-            // Replace the smallestClause variable with the next clause if it has less literals
-            if (cl.size() < smallestClause.size()) {
-                smallestClause = cl;
+            soft.add(lits);
+        }
+
+        // soft clauses may bring variables of their own, so they are
+        // numbered before the solver copies the hard clauses
+        MaxSatSolver solver = new MaxSatSolver(vars);
+        ImList<Long> weights = problem.getWeights();
+        for (int[] lits : soft) {
+            solver.addSoftClause(lits, 0, lits.length, weights.first());
+            weights = weights.rest();
+        }
+        boolean[] model = solver.solve();
+        if (model == null) return null;
+        return vars.toEnvironment(model);
+    }
+
+    /**
+     * Explain why a problem has no solution.
+     *
+     * @return a minimal unsatisfiable subset of the clauses of formula: the
+     *         clauses have no solution together with the constraints of
+     *         formula, but do without any one of them; or null if formula
+     *         has a solution.
+     */
+    public static ImList<Clause> unsatCore(Formula formula) {
+        return unsatCore(formula, true);
+    }
+
+    /**
+     * Explain why a problem has no solution.
+     *
+     * @param minimize whether to make the core minimal, which costs one
+     *            more solve per clause in it
+     * @return a subset of the clauses of formula that has no solution
+     *         together with the constraints of formula, or null if formula
+     *         has a solution.
+     */
+    public static ImList<Clause> unsatCore(Formula formula, boolean minimize) {
+        int[] core = UnsatCore.find(IntFormula.encode(formula), minimize);
+        if (core == null) return null;
+
+        ImList<Clause> out = new EmptyImList<Clause>();
+        int i = 0;
+        int k = 0;
+        for (Clause c : formula.getClauses()) {
+            if (k < core.length && core[k] == i) {
+                out = out.add(c);
+                k++;
             }
+            i++;
         }
+        return out;
+    }
+
+    /*
+     * A branch point of the search: the clauses before branching, and the
+     * literal that was tried first.
+     */
+    private static class Branch {
+        final ImList<Clause> clauses;
+        final Literal literal;
+        final boolean unit;
+        boolean negationTried;
 
-        // The variable literal is the first Literal in smallestClause.
-        Literal literal = smallestClause.chooseLiteral();
-        
-        if (smallestClause.isUnit()) {
-
-            if (literal instanceof PosLiteral) {
-                return solve(substitute(clauses, literal), env.putTrue(literal.getVariable()));
-                // Positive literal will have bool.TRUE
-            } else {
-                return solve(substitute(clauses, literal), env.putFalse(literal.getVariable()));
-                // Negative literal will have bool.FALSE
+        Branch(ImList<Clause> clauses, Literal literal, boolean unit) {
+            this.clauses = clauses;
+            this.literal = literal;
+            this.unit = unit;
+        }
+    }
+
+    private static boolean solve(ImList<Clause> formulaClauses, IntFormula vars, Trail trail) {
+        // Explicit stack of branch points instead of recursion, so the depth
+        // of the search is only bounded by the heap.
+        // Each branch point has its own decision level on the trail.
+        ArrayList<Branch> stack = new ArrayList<Branch>();
+        ImList<Clause> clauses = formulaClauses;
+
+        while (true) {
+            // no clauses, the formula is trivially satisfiable.
+            if (clauses.isEmpty()) {
+                return true;
             }
-            
 
-        } else {
+            Clause smallestClause = clauses.first();
+            boolean conflict = false;
 
-            Environment testE = solve(substitute(clauses, literal), env.putTrue(literal.getVariable()));
+            for (Clause cl: clauses) {
+                // Empty clause, the clause is unsatisfiable.
+                if (cl.isEmpty()) {
+                    conflict = true;
+                    break;
+                }
+
+                // Replace the smallestClause variable with the next clause if it has less literals
+                if (cl.size() < smallestClause.size()) {
+                    smallestClause = cl;
+                }
+            }
+
+            if (!conflict) {
+                // The variable literal is the first Literal in smallestClause.
+                Literal literal = smallestClause.chooseLiteral();
+                stack.add(new Branch(clauses, literal, smallestClause.isUnit()));
+
+                // Make the literal true; a negative literal gives its variable Bool.FALSE
+                trail.newDecisionLevel();
+                trail.assign(vars.toLit(literal), Trail.NO_REASON);
+                clauses = substitute(clauses, literal);
+                continue;
+            }
 
-            // substitute it in all clause
-            if (testE == null){
-                testE = solve(substitute(clauses, literal.getNegation()), env.putFalse(literal.getVariable()));
+            // Backtrack to the most recent branch point with an untried branch
+            clauses = null;
+            while (clauses == null) {
+                if (stack.isEmpty()) {
+                    return false;
+                }
+                Branch branch = stack.get(stack.size() - 1);
+                // Undo the assignment in O(1) before trying the other branch
+                trail.cancelUntil(stack.size() - 1);
 
+                if (branch.unit || branch.negationTried) {
+                    // A unit clause has no other branch
+                    stack.remove(stack.size() - 1);
+                } else {
+                    branch.negationTried = true;
+                    Literal negation = branch.literal.getNegation();
+                    trail.newDecisionLevel();
+                    trail.assign(vars.toLit(negation), Trail.NO_REASON);
+                    clauses = substitute(branch.clauses, negation);
+                }
             }
-            return testE;
         }
     }
 
-    private static ImList<Clause> substitute(ImList<Clause> clauses, Literal l) {
+    // package-private so that it can be benchmarked on its own
+    static ImList<Clause> substitute(ImList<Clause> clauses, Literal l) {
 
         // Initiate new clause list
         ImList<Clause> out = new EmptyImList<Clause>();
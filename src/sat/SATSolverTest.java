@@ -3,30 +3,65 @@ package sat;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
 
+import sat.cdcl.CDCLSolver;
 import sat.env.*;
 import sat.formula.*;
+import sat.maxsat.MaxSatSolver;
+import sat.proof.DratWriter;
 
 
 public class SATSolverTest {
 
     public static void main(String[] args) {
         String file_path = args[0];
+        if (file_path.endsWith(".wcnf")) {
+            solveWeighted("sampleCNF/" + file_path);
+            return;
+        }
+        SolverMode mode = args.length > 1 ? SolverMode.valueOf(args[1].toUpperCase()) : SolverMode.DPLL;
         Formula formula = convertCNF("sampleCNF/"+file_path);
         System.out.println("SAT solver starts!!!");
         long started = System.nanoTime();
-        Environment env = SATSolver.solve(formula);
+        Environment env;
+        if (args.length > 2) {
+            // log a DRAT proof to args[2]; only the CDCL solver can
+            env = solveWithProof(formula, args[2]);
+        } else {
+            env = SATSolver.solve(formula, mode);
+        }
         long time = System.nanoTime();
         long timeTaken = time - started;
         System.out.println("Time:" + timeTaken / 1000000.0 + "ms");
         createTxt(env);
     }
     
+    public static void solveWeighted(String file) {
+        System.out.println("MaxSAT solver starts!!!");
+        try {
+            long started = System.nanoTime();
+            MaxSatSolver solver = DimacsParser.parseWeighted(file);
+            boolean[] model = solver.solve();
+            long timeTaken = System.nanoTime() - started;
+            System.out.println("Time:" + timeTaken / 1000000.0 + "ms");
+            if (model == null) System.out.println("Results: Hard clauses unsatisfiable");
+            else System.out.println("Results: Optimum cost " + solver.cost());
+        } catch (IOException e) {
+            System.out.println("IO Exception Error Bro!");
+        }
+    }
+
+    public static Environment solveWithProof(Formula formula, String proofFile) {
+        CDCLSolver solver = new CDCLSolver(formula);
+        try (DratWriter proof = new DratWriter(proofFile)) {
+            solver.setProof(proof);
+            return solver.solve();
+        } catch (IOException e) {
+            System.out.println("IO Exception writing proof bro...");
+            return null;
+        }
+    }
+
     public static void createTxt(Environment env) {
         if (env == null) {
             System.out.println("Results: Unsatisfiable");
@@ -54,65 +89,11 @@ public class SATSolverTest {
     }
 
     public static Formula convertCNF(String file) {
-        List<String> rows;
         try {
-            rows = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+            return DimacsParser.parse(file).decode();
         } catch (IOException e){
             System.out.println("IO Exception Error Bro!");
             return null;
         }
-        
-        ArrayList<Literal> lList = new ArrayList<>();
-        ArrayList<Clause> cList = new ArrayList<>();
-        
-        for (String row : rows) {
-            
-            if (row.length() != 0) {
-                
-                if (row.charAt(0) == 'c' || row.charAt(0) == 'p') {
-                    // Ignore if the string is a comment/problem statement
-                    continue;
-                } else {
-                    
-                    // Split each row into an array 
-                    String[] lArr = row.trim().split("\\s+");
-
-                    for (String l : lArr) {
-                        
-                        if (l.charAt(0) == '-') {
-                            Literal lit = NegLiteral.make(l.substring(1));
-                            lList.add(lit);
-                        } else if (l.charAt(0) != '0') {
-                            Literal lit = PosLiteral.make(l);
-                            lList.add(lit);
-                        } else {
-                            // Call makeCl to create a new Clause Object
-                            Clause newClause = makeCl(lList);
-                            cList.add(newClause);
-                            lList.clear();
-                        }
-                    }
-                 }
-            }
-        }
-
-        return makeFm(cList);
-    }
-
-    
-    private static Formula makeFm(ArrayList<Clause> e) {
-        Formula f = new Formula();
-        for (Clause c : e) {
-            f = f.addClause(c);
-        }
-        return f;
-    }
-    
-    private static Clause makeCl(ArrayList<Literal> e) {
-        Clause c = new Clause();
-        for (Literal l : e) {
-            c = c.add(l);
-        }
-        return c;
     }
 }
\ No newline at end of file
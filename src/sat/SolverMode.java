@@ -0,0 +1,43 @@
+package sat;
+
+/**
+ * Search engines that SATSolver can use to decide a formula.
+ */
+public enum SolverMode {
+    /**
+     * Recursive DPLL with unit propagation and chronological backtracking.
+     */
+    DPLL,
+
+    /**
+     * Conflict-driven clause learning with 1-UIP conflict analysis and
+     * non-chronological backjumping.
+     */
+    CDCL,
+
+    /**
+     * Differently configured CDCL solvers racing on all available cores,
+     * sharing short learnt clauses.
+     */
+    PORTFOLIO,
+
+    /**
+     * Lookahead splits the formula into cubes, which CDCL solvers conquer
+     * as tasks of a work-stealing pool on all available cores.
+     */
+    CUBE_AND_CONQUER,
+
+    /**
+     * DPLL branching on the variable whose values simplify the formula
+     * most when propagated, with failed literals and double lookahead;
+     * suited to small hard formulas such as random 3-SAT.
+     */
+    LOOKAHEAD,
+
+    /**
+     * Stochastic local search (ProbSAT), which is fast on satisfiable
+     * formulas; if it finds no solution within its flip budget, CDCL takes
+     * over starting from the best assignment it found.
+     */
+    SLS
+}
@@ -0,0 +1,43 @@
+package sat.cdcl;
+
+/**
+ * Decision heuristic of a CDCLSolver: chooses the literal to branch on when
+ * propagation reaches a fixpoint without conflict.
+ *
+ * The solver reports the variables involved in each conflict (bump), the end
+ * of each conflict (decay) and every variable it unassigns on backjumping
+ * (unassigned), so that heuristics can keep their own order incrementally.
+ */
+public interface BranchingHeuristic {
+    /**
+     * Called once by the solver before any other method.
+     */
+    void init(CDCLSolver solver);
+
+    /**
+     * The solver has grown to numVars variables; the new ones are
+     * unassigned.
+     */
+    void newVars(int numVars);
+
+    /**
+     * var took part in deriving a learnt clause.
+     */
+    void bump(int var);
+
+    /**
+     * A conflict has been analysed.
+     */
+    void decay();
+
+    /**
+     * var has just been unassigned by backjumping.
+     */
+    void unassigned(int var);
+
+    /**
+     * @return an unassigned literal to make true, or -1 if every variable
+     *         is assigned
+     */
+    int pick();
+}
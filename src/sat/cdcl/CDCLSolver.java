@@ -0,0 +1,967 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+import sat.env.Environment;
+import sat.formula.Formula;
+
+/**
+ * A conflict-driven clause learning (CDCL) SAT solver.
+ *
+ * Works on the primitive representation of IntFormula: literals are ints as
+ * described in Lit, and clauses live in a ClauseArena referred to by offset.
+ * Every conflict is analysed down to its first unique implication point, the
+ * resulting clause is learned, and the search backjumps directly to the
+ * second highest decision level in that clause instead of undoing only the
+ * last decision.
+ *
+ * Learnt clauses are kept in check like in Glucose: each records its
+ * literal block distance (LBD, the number of decision levels among its
+ * literals) and an activity bumped whenever it takes part in a conflict.
+ * Every few thousand conflicts the less useful half of them, highest LBD
+ * first and then least active, is deleted, and the clause arena is
+ * compacted in place, so memory stays bounded however long the search
+ * runs. Binary clauses, clauses of LBD 2 or less, and clauses that are
+ * the reason of a current assignment are always kept.
+ *
+ * The solver is incremental: clauses, including ones over new variables,
+ * can be added between searches, and each search can be run under
+ * assumptions, literals taken as true for that search only. Learnt clauses,
+ * variable activities and saved phases carry over from one search to the
+ * next, so a run of closely related queries costs far less than solving
+ * each from scratch.
+ *
+ * Besides clauses, the solver takes pseudo-Boolean and cardinality
+ * constraints natively. They are propagated by a CounterPropagator in the
+ * same loop as the watched clauses, and take part in conflict analysis
+ * through the clauses that explain their implications, so a constraint
+ * over n literals costs O(n) memory instead of the many clauses and fresh
+ * variables of a CNF encoding.
+ */
+public class CDCLSolver implements ClauseSink {
+    private static final byte UNASSIGNED = Trail.UNASSIGNED;
+    private static final byte TRUE = Trail.TRUE;
+    private static final byte FALSE = Trail.FALSE;
+    private static final int NO_REASON = Trail.NO_REASON;
+
+    private final IntFormula formula;
+    private final ClauseArena clauses;
+    private final Watches watches;
+    private final CounterPropagator constraints;
+    private BranchingHeuristic heuristic;
+    private RestartPolicy restarts;
+
+    private final Trail trail;
+    // trail position of the next literal to propagate
+    private int qhead;
+    // trail position of the first literal not counted by constraints
+    private int counted;
+    // last value of each variable, reused when it is next decided
+    private boolean[] phases;
+    private boolean phaseSaving = true;
+
+    // scratch state of analyze
+    private boolean[] seen;
+    private int[] learnt;
+    private int backjumpLevel;
+    private int learntLbd;
+    private int[] levelStamps;
+    private int stamp;
+
+    // learnt clause database
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final double CLAUSE_RESCALE_LIMIT = 1e20;
+    private double clauseIncrement = 1;
+    private int numLearnts;
+    private long conflicts;
+    private long nextReduce;
+    private int reduceFirst = 2000;
+    private int reduceIncrement = 300;
+    private int reductions;
+
+    // literals decided first, one per decision level, by the current search
+    private int[] assumptions = new int[0];
+    // assumptions responsible for the last search being UNSAT
+    private int[] failed = new int[0];
+
+    // false once the clauses are known to be unsatisfiable at level 0
+    private boolean ok = true;
+    private volatile boolean interrupted;
+    // the last satisfying assignment found, or null
+    private boolean[] model;
+    // the decisions, assumptions included, that led to it
+    private int[] modelDecisions;
+
+    // receives every learnt clause, if set
+    private ProofLog proof;
+
+    // learnt clause sharing with other solvers, if any
+    private ClauseExchange exchange;
+    private int exchangeId;
+    private int shareSize;
+    private long exchangeCursor;
+    private final ClauseSink importer = (lits, from, length) -> addClauseAtRoot(lits, from, length, true);
+
+    /*
+     * Rep invariant:
+     *     seen, phases and levelStamps have one entry per variable (plus one
+     *     for levelStamps), and watches one list per literal
+     *     qhead <= trail.size() and counted <= trail.size()
+     *     the negations of the literals at trail positions below counted
+     *     are counted as false by constraints, and no others, except for
+     *     literals assigned at level 0 before a constraint was added
+     *     every clause in clauses has at least two literals and is watched
+     *     by its first two
+     */
+
+    /**
+     * Create a solver for the given formula.
+     * Requires: formula is non-null
+     */
+    public CDCLSolver(Formula formula) {
+        this(IntFormula.encode(formula));
+    }
+
+    /**
+     * Create a solver for the given formula. The solver keeps its own copy
+     * of the clauses, so formula is not modified, except that variables
+     * added to the solver later are also created in formula, which names
+     * them.
+     * Requires: formula is non-null
+     */
+    public CDCLSolver(IntFormula formula) {
+        this.formula = formula;
+        int n = formula.numVars();
+        ClauseArena input = formula.getClauses();
+        clauses = new ClauseArena(input.end());
+        trail = new Trail(n);
+        seen = new boolean[n];
+        phases = new boolean[n];
+        learnt = new int[16];
+        levelStamps = new int[n + 1];
+        watches = new Watches(2 * n);
+        constraints = new CounterPropagator(2 * n);
+
+        int[] data = input.data();
+        for (int c = 0; c < input.end(); c = input.next(c)) {
+            addClauseAtRoot(data, c + ClauseArena.HEADER, input.size(c), false);
+        }
+        for (PbConstraint c : formula.getConstraints()) {
+            addConstraintAtRoot(c);
+        }
+        setHeuristic(new VsidsHeuristic());
+        setRestartPolicy(new LubyRestarts(100));
+        nextReduce = reduceFirst;
+    }
+
+    /**
+     * Replace the decision heuristic, VsidsHeuristic by default.
+     * Requires: heuristic is not used by another solver
+     */
+    public void setHeuristic(BranchingHeuristic heuristic) {
+        this.heuristic = heuristic;
+        heuristic.init(this);
+    }
+
+    /**
+     * Replace the restart policy, LubyRestarts(100) by default.
+     * Requires: restarts is not used by another solver
+     */
+    public void setRestartPolicy(RestartPolicy restarts) {
+        this.restarts = restarts;
+    }
+
+    /**
+     * Reduce the learnt clause database after first conflicts, then after
+     * every first + k * increment more for the k-th time; 2000 and 300 by
+     * default.
+     * Requires: first > 0 and increment >= 0
+     */
+    public void setReduceSchedule(int first, int increment) {
+        this.reduceFirst = first;
+        this.reduceIncrement = increment;
+        nextReduce = conflicts + first;
+    }
+
+    /**
+     * @return number of learnt clauses currently kept
+     */
+    public int numLearnts() {
+        return numLearnts;
+    }
+
+    /**
+     * Exchange learnt clauses with other solvers over the same variables:
+     * every learnt clause of at most maxSize literals is published, and
+     * clauses published by the others are added whenever this solver is
+     * at decision level 0, that is, at the start of a search and after
+     * every restart.
+     * @param id distinguishes this solver from the others on exchange
+     */
+    public void shareClauses(ClauseExchange exchange, int id, int maxSize) {
+        this.exchange = exchange;
+        this.exchangeId = id;
+        this.shareSize = maxSize;
+    }
+
+    /**
+     * Log a DRAT proof of the searches to come: every learnt clause is
+     * added to proof, and the empty clause once the clauses are found
+     * unsatisfiable. The proof is checkable against the formula the solver
+     * was created for, so clauses must not be added to the solver, nor
+     * shared with other solvers, once a proof is being logged.
+     * @throws IllegalStateException if the solver has constraints, whose
+     *         reasoning DRAT cannot express
+     */
+    public void setProof(ProofLog proof) {
+        if (constraints.size() > 0) throw new IllegalStateException("cannot log a DRAT proof with constraints");
+        this.proof = proof;
+        // the constructor may have found the clauses unsatisfiable already
+        if (!ok) proof.add(learnt, 0, 0);
+    }
+
+    /**
+     * Make the current or next search stop as soon as possible with
+     * Result.UNKNOWN. May be called from any thread. Once interrupted, a
+     * solver stays interrupted.
+     */
+    public void interrupt() {
+        interrupted = true;
+    }
+
+    /**
+     * Turn phase saving on (the default) or off. With phase saving, a
+     * variable unassigned by backjumping or restarting keeps the value it
+     * had, and is given that value again when it is next decided.
+     */
+    public void setPhaseSaving(boolean phaseSaving) {
+        this.phaseSaving = phaseSaving;
+    }
+
+    /**
+     * Set the value that var will take when it is next decided.
+     */
+    public void setPhase(int var, boolean value) {
+        phases[var] = value;
+    }
+
+    /**
+     * Set the value that each variable v < values.length will take when it
+     * is next decided to values[v], for instance to start the search from
+     * the best assignment found by local search.
+     */
+    public void setPhases(boolean[] values) {
+        ensureVars(values.length);
+        System.arraycopy(values, 0, phases, 0, values.length);
+    }
+
+    /**
+     * @return the literal of var to decide: positive iff var's phase is true
+     *         (initially every phase is false)
+     */
+    public int phaseLiteral(int var) {
+        return Lit.make(var, !phases[var]);
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int numVars() {
+        return trail.numVars();
+    }
+
+    /**
+     * Make sure variables 0..numVars-1 exist. Adding a clause or assumption
+     * over a new variable does this too.
+     * Requires: no search is running
+     */
+    public void ensureVars(int numVars) {
+        if (numVars <= trail.numVars()) return;
+        formula.ensureVars(numVars);
+        trail.ensureVars(numVars);
+        watches.ensureLiterals(2 * numVars);
+        constraints.ensureLiterals(2 * numVars);
+        seen = Arrays.copyOf(seen, numVars);
+        phases = Arrays.copyOf(phases, numVars);
+        levelStamps = Arrays.copyOf(levelStamps, numVars + 1);
+        heuristic.newVars(numVars);
+    }
+
+    /**
+     * @return true iff var currently has a value
+     */
+    public boolean isAssigned(int var) {
+        return trail.isAssigned(var);
+    }
+
+    /**
+     * @return true iff lit is currently true
+     */
+    public boolean isTrue(int lit) {
+        return trail.valueOf(lit) == TRUE;
+    }
+
+    /**
+     * @return the clauses of length two or more held by the solver, input
+     *         and learnt; literals within a clause are reordered by search
+     */
+    public ClauseArena getClauses() {
+        return clauses;
+    }
+
+    /**
+     * Search for a satisfying assignment in which the given literals are
+     * true.
+     *
+     * @return an environment binding every variable of the formula for which
+     *         the formula evaluates to Bool.TRUE, or null if no such
+     *         environment exists or the search was interrupted.
+     */
+    public Environment solve(int... assumptions) {
+        if (search(assumptions) != Result.SAT) return null;
+        return formula.toEnvironment(model);
+    }
+
+    /**
+     * Search for a satisfying assignment in which the given literals are
+     * true. The assumptions only hold for this search: the solver is back
+     * at decision level 0 afterwards, so clauses can be added and the
+     * search repeated under other assumptions.
+     *
+     * @return SAT if one was found, after which model() returns it; UNSAT
+     *         if there is none under the assumptions (isOk() tells whether
+     *         there is none at all), after which failedAssumptions() says
+     *         why; UNKNOWN if the search was interrupted
+     */
+    public Result search(int... assumptions) {
+        for (int lit : assumptions) {
+            ensureVars(Lit.var(lit) + 1);
+        }
+        this.assumptions = assumptions;
+        failed = new int[0];
+        // a repeated assumption opens a level without assigning anything
+        if (levelStamps.length <= numVars() + assumptions.length) {
+            levelStamps = Arrays.copyOf(levelStamps, numVars() + assumptions.length + 1);
+        }
+        importClauses();
+        if (!ok) return Result.UNSAT;
+        while (true) {
+            if (interrupted) {
+                cancelUntil(0);
+                return Result.UNKNOWN;
+            }
+            int conflict = propagate();
+            if (conflict != NO_REASON) {
+                if (trail.decisionLevel() == 0) {
+                    rootConflict();
+                    return Result.UNSAT;
+                }
+                int size = analyze(conflict);
+                heuristic.decay();
+                if (proof != null) proof.add(learnt, 0, size);
+                cancelUntil(backjumpLevel);
+                if (size == 1) {
+                    trail.assign(learnt[0], NO_REASON);
+                } else {
+                    int cref = attach(learnt, size, true);
+                    clauses.setLbd(cref, learntLbd);
+                    bumpClause(cref);
+                    trail.assign(learnt[0], cref);
+                }
+                decayClauses();
+                if (++conflicts >= nextReduce) reduceLearnts();
+                if (exchange != null && size <= shareSize) {
+                    exchange.publish(exchangeId, learnt, size);
+                }
+                if (restarts.conflict(learntLbd)) {
+                    cancelUntil(0);
+                    importClauses();
+                    if (!ok) return Result.UNSAT;
+                }
+            } else {
+                // assumptions are decided first, each at its own level
+                int lit = -1;
+                while (lit < 0 && trail.decisionLevel() < assumptions.length) {
+                    int a = assumptions[trail.decisionLevel()];
+                    byte value = trail.valueOf(a);
+                    if (value == TRUE) {
+                        // already implied; keep levels in step with assumptions
+                        trail.newDecisionLevel();
+                    } else if (value == FALSE) {
+                        failed = analyzeFinal(a);
+                        cancelUntil(0);
+                        return Result.UNSAT;
+                    } else {
+                        lit = a;
+                    }
+                }
+                if (lit < 0) lit = heuristic.pick();
+                if (lit < 0) {
+                    model = trail.model();
+                    modelDecisions = decisions();
+                    cancelUntil(0);
+                    return Result.SAT;
+                }
+                trail.newDecisionLevel();
+                trail.assign(lit, NO_REASON);
+            }
+        }
+    }
+
+    /**
+     * @return the assignment found by the last search that returned SAT:
+     *         model[v] is true iff variable v is true
+     * Requires: such a search has happened
+     */
+    public boolean[] model() {
+        return model;
+    }
+
+    /**
+     * @return the literals decided, assumptions included, on the way to
+     *         the assignment found by the last search that returned SAT.
+     *         Everything else in it was implied, so the clause of their
+     *         negations rules out that assignment and no other.
+     * Requires: such a search has happened
+     */
+    public int[] modelDecisions() {
+        return modelDecisions.clone();
+    }
+
+    /**
+     * @return a subset of the assumptions of the last search that is
+     *         unsatisfiable together with the clauses; empty if the clauses
+     *         alone are
+     * Requires: the last search returned UNSAT
+     */
+    public int[] failedAssumptions() {
+        return failed.clone();
+    }
+
+    /**
+     * @return the formula this solver was created for
+     */
+    public IntFormula getFormula() {
+        return formula;
+    }
+
+    /**
+     * Add the clause lits[from..from+length) to the solver, creating any
+     * variables it mentions.
+     * Requires: no search is running
+     */
+    @Override
+    public void addClause(int[] lits, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            ensureVars(Lit.var(lits[i]) + 1);
+        }
+        addClauseAtRoot(lits, from, length, false);
+    }
+
+    /**
+     * Add a clause to the solver, creating any variables it mentions.
+     * Requires: no search is running
+     */
+    public void addClause(int... lits) {
+        addClause(lits, 0, lits.length);
+    }
+
+    /**
+     * Add a pseudo-Boolean or cardinality constraint to the solver,
+     * creating any variables it mentions. Constraints cannot be logged in
+     * a DRAT proof, so none may be added once one is being logged.
+     * Requires: no search is running
+     * @throws IllegalStateException if a proof is being logged
+     */
+    public void addConstraint(PbConstraint c) {
+        if (proof != null) throw new IllegalStateException("cannot add a constraint while logging a DRAT proof");
+        for (int i = 0; i < c.size(); i++) {
+            ensureVars(Lit.var(c.lit(i)) + 1);
+        }
+        addConstraintAtRoot(c);
+    }
+
+    /**
+     * Tentatively make lit true and propagate, then undo everything.
+     * Requires: no search is running and lit is unassigned
+     * @return the number of literals assigned (lit and everything it
+     *         implied), or -1 if lit leads to a conflict by propagation
+     *         alone
+     */
+    public int probe(int lit) {
+        return probe(lit, null);
+    }
+
+    /**
+     * Like probe(lit), also copying the literals assigned, lit first, into
+     * implied unless it is null.
+     * Requires: implied is null or has room for numVars() literals
+     */
+    public int probe(int lit, int[] implied) {
+        if (!ok) return -1;
+        // finish any propagation left over at level 0 first
+        if (propagate() != NO_REASON) {
+            rootConflict();
+            return -1;
+        }
+        int start = trail.size();
+        trail.newDecisionLevel();
+        trail.assign(lit, NO_REASON);
+        boolean conflict = propagate() != NO_REASON;
+        int assigned = trail.size() - start;
+        if (implied != null && !conflict) {
+            for (int i = 0; i < assigned; i++) {
+                implied[i] = trail.get(start + i);
+            }
+        }
+        cancelUntil(0);
+        return conflict ? -1 : assigned;
+    }
+
+    /**
+     * @return false iff the clauses are already known to be unsatisfiable
+     */
+    public boolean isOk() {
+        return ok;
+    }
+
+    /*
+     * @return the literal decided at each decision level that has one
+     */
+    private int[] decisions() {
+        int[] out = new int[trail.decisionLevel()];
+        int n = 0;
+        for (int level = 1; level <= trail.decisionLevel(); level++) {
+            int end = level < trail.decisionLevel() ? trail.levelStart(level + 1) : trail.size();
+            // an assumption that was already implied opens an empty level
+            if (trail.levelStart(level) < end) out[n++] = trail.get(trail.levelStart(level));
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /*
+     * The clauses have been found unsatisfiable at decision level 0.
+     */
+    private void rootConflict() {
+        ok = false;
+        if (proof != null) proof.add(learnt, 0, 0);
+    }
+
+    private void importClauses() {
+        if (exchange != null && ok) {
+            exchangeCursor = exchange.collect(exchangeCursor, exchangeId, importer);
+        }
+    }
+
+    /*
+     * Add a clause while at decision level 0: literals already false are
+     * dropped, and so is the whole clause if it is already satisfied or a
+     * tautology. A resulting unit is assigned and propagated at once.
+     */
+    private void addClauseAtRoot(int[] lits, int from, int length, boolean isLearnt) {
+        if (!ok) return;
+        int[] c = new int[length];
+        int size = 0;
+        for (int i = from; i < from + length; i++) {
+            int lit = lits[i];
+            byte value = trail.valueOf(lit);
+            if (value == TRUE) return;
+            if (value == FALSE) continue;
+            boolean keep = true;
+            for (int j = 0; j < size; j++) {
+                if (c[j] == lit) keep = false;
+                else if (c[j] == Lit.not(lit)) return;
+            }
+            if (keep) c[size++] = lit;
+        }
+
+        if (size == 0) {
+            rootConflict();
+        } else if (size == 1) {
+            trail.assign(c[0], NO_REASON);
+            if (propagate() != NO_REASON) rootConflict();
+        } else {
+            attach(c, size, isLearnt);
+        }
+    }
+
+    /*
+     * Add a constraint while at decision level 0: literals already true
+     * are taken off the bound and literals already false dropped, weights
+     * above the bound are cut down to it, and what is left is stored as a
+     * clause if any one literal satisfies it, and otherwise given to
+     * constraints, with whatever it implies already propagated.
+     */
+    private void addConstraintAtRoot(PbConstraint c) {
+        if (!ok) return;
+        int[] lits = new int[c.size()];
+        long[] weights = new long[c.size()];
+        long bound = c.bound();
+        int size = 0;
+        for (int i = 0; i < c.size(); i++) {
+            byte value = trail.valueOf(c.lit(i));
+            if (value == TRUE) bound -= c.weight(i);
+            else if (value == UNASSIGNED) {
+                lits[size] = c.lit(i);
+                weights[size++] = c.weight(i);
+            }
+        }
+        if (bound <= 0) return;
+
+        long sum = 0;
+        boolean clause = true;
+        for (int i = 0; i < size; i++) {
+            weights[i] = Math.min(weights[i], bound);
+            sum += weights[i];
+            clause &= weights[i] == bound;
+        }
+        if (sum < bound) {
+            rootConflict();
+        } else if (clause) {
+            addClauseAtRoot(lits, 0, size, false);
+        } else {
+            constraints.imply(constraints.add(lits, weights, size, bound), trail);
+            if (propagate() != NO_REASON) rootConflict();
+        }
+    }
+
+    /*
+     * Store lits[0..size) as a clause and watch its first two literals.
+     * Requires: size >= 2
+     * @return reference of the stored clause
+     */
+    private int attach(int[] lits, int size, boolean isLearnt) {
+        int cref = clauses.add(lits, 0, size, isLearnt);
+        watches.watch(lits[0], cref, lits[1]);
+        watches.watch(lits[1], cref, lits[0]);
+        if (isLearnt) {
+            // no better bound is known for clauses from elsewhere
+            clauses.setLbd(cref, size);
+            numLearnts++;
+        }
+        return cref;
+    }
+
+    /*
+     * Assign every literal implied by a unit clause until no clause is unit.
+     * Making a literal true only visits the clauses watching its negation;
+     * each is either satisfied by its blocker, moved to a new watch, or has
+     * become unit or conflicting.
+     * @return reference of a clause whose literals are all false, the
+     *         reason of a constraint that cannot be satisfied, or NO_REASON
+     */
+    private int propagate() {
+        int conflict = NO_REASON;
+        int[] data = clauses.data();
+        while (qhead < trail.size()) {
+            int falseLit = Lit.not(trail.get(qhead++));
+            if (constraints.size() > 0) {
+                counted = qhead;
+                int reason = constraints.falsified(falseLit, trail);
+                if (reason != NO_REASON) {
+                    qhead = trail.size();
+                    return reason;
+                }
+            }
+            int[] ws = watches.list(falseLit);
+            int n = watches.size(falseLit);
+            int i = 0;
+            int j = 0;
+            while (i < n) {
+                int cref = ws[i];
+                int blocker = ws[i + 1];
+                i += 2;
+                if (trail.valueOf(blocker) == TRUE) {
+                    ws[j++] = cref;
+                    ws[j++] = blocker;
+                    continue;
+                }
+
+                // make sure the false literal is the second one
+                int lits = cref + ClauseArena.HEADER;
+                if (data[lits] == falseLit) {
+                    data[lits] = data[lits + 1];
+                    data[lits + 1] = falseLit;
+                }
+                int first = data[lits];
+                if (first != blocker && trail.valueOf(first) == TRUE) {
+                    ws[j++] = cref;
+                    ws[j++] = first;
+                    continue;
+                }
+
+                // look for a new literal to watch
+                boolean moved = false;
+                int end = lits + data[cref];
+                for (int k = lits + 2; k < end; k++) {
+                    if (trail.valueOf(data[k]) != FALSE) {
+                        data[lits + 1] = data[k];
+                        data[k] = falseLit;
+                        watches.watch(data[lits + 1], cref, first);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) continue;
+
+                // the clause is unit or conflicting under the trail
+                ws[j++] = cref;
+                ws[j++] = first;
+                if (trail.valueOf(first) == FALSE) {
+                    conflict = cref;
+                    qhead = trail.size();
+                    while (i < n) ws[j++] = ws[i++];
+                } else {
+                    trail.assign(first, cref);
+                }
+            }
+            watches.shrink(falseLit, j);
+        }
+        return conflict;
+    }
+
+    /*
+     * Derive the first-UIP clause from a conflicting clause or constraint
+     * into learnt. The asserting literal is placed first and a literal of
+     * the backjump level second; the backjump level is left in
+     * backjumpLevel.
+     * @return number of literals in the learnt clause
+     */
+    private int analyze(int conflict) {
+        int size = 1; // learnt[0] is reserved for the asserting literal
+        int pathCount = 0;
+        int p = -1;
+        int index = trail.size() - 1;
+        int cref = conflict;
+
+        do {
+            // the literals of the reason, from the arena or explained
+            int[] reason;
+            int from;
+            int length;
+            if (CounterPropagator.isConstraint(cref)) {
+                length = constraints.explain(cref, p, trail);
+                reason = constraints.explanation();
+                from = 0;
+            } else {
+                if (clauses.isLearnt(cref)) {
+                    bumpClause(cref);
+                    // clauses that become more local are worth more
+                    int lbd = clauseLbd(cref);
+                    if (lbd < clauses.lbd(cref)) clauses.setLbd(cref, lbd);
+                }
+                reason = clauses.data();
+                from = cref + ClauseArena.HEADER;
+                length = clauses.size(cref);
+            }
+            for (int i = from; i < from + length; i++) {
+                int q = reason[i];
+                int var = Lit.var(q);
+                if (p >= 0 && var == Lit.var(p)) continue;
+                if (!seen[var] && trail.level(var) > 0) {
+                    seen[var] = true;
+                    heuristic.bump(var);
+                    if (trail.level(var) >= trail.decisionLevel()) {
+                        pathCount++;
+                    } else {
+                        if (size == learnt.length) learnt = Arrays.copyOf(learnt, size * 2);
+                        learnt[size++] = q;
+                    }
+                }
+            }
+            // walk back to the most recent literal involved in the conflict
+            while (!seen[Lit.var(trail.get(index))]) index--;
+            p = trail.get(index--);
+            seen[Lit.var(p)] = false;
+            pathCount--;
+            if (pathCount > 0) cref = trail.reason(Lit.var(p));
+        } while (pathCount > 0);
+
+        learnt[0] = Lit.not(p);
+        for (int i = 1; i < size; i++) {
+            seen[Lit.var(learnt[i])] = false;
+        }
+
+        learntLbd = lbd(learnt, size);
+        backjumpLevel = 0;
+        if (size > 1) {
+            int max = 1;
+            for (int i = 2; i < size; i++) {
+                if (trail.level(Lit.var(learnt[i])) > trail.level(Lit.var(learnt[max]))) max = i;
+            }
+            int tmp = learnt[1];
+            learnt[1] = learnt[max];
+            learnt[max] = tmp;
+            backjumpLevel = trail.level(Lit.var(learnt[1]));
+        }
+        return size;
+    }
+
+    /*
+     * Find the assumptions that imply the negation of assumption p, by
+     * walking the implication graph back from p to the decisions, which
+     * are all assumptions at this point.
+     * Requires: p is false under the current trail
+     * @return p and the assumptions found
+     */
+    private int[] analyzeFinal(int p) {
+        int[] out = new int[] { p };
+        int size = 1;
+        if (trail.decisionLevel() == 0) return out;
+        seen[Lit.var(p)] = true;
+        for (int i = trail.size() - 1; i >= trail.levelStart(1); i--) {
+            int var = Lit.var(trail.get(i));
+            if (!seen[var]) continue;
+            int reason = trail.reason(var);
+            if (reason == NO_REASON) {
+                if (size == out.length) out = Arrays.copyOf(out, size * 2);
+                out[size++] = trail.get(i);
+            } else if (CounterPropagator.isConstraint(reason)) {
+                int length = constraints.explain(reason, trail.get(i), trail);
+                int[] explanation = constraints.explanation();
+                for (int k = 1; k < length; k++) {
+                    int q = Lit.var(explanation[k]);
+                    if (trail.level(q) > 0) seen[q] = true;
+                }
+            } else {
+                // the implied literal is the first of its reason
+                for (int k = 1; k < clauses.size(reason); k++) {
+                    int q = Lit.var(clauses.lit(reason, k));
+                    if (trail.level(q) > 0) seen[q] = true;
+                }
+            }
+            seen[var] = false;
+        }
+        seen[Lit.var(p)] = false;
+        return Arrays.copyOf(out, size);
+    }
+
+    /*
+     * @return number of distinct decision levels among lits[0..size)
+     */
+    private int lbd(int[] lits, int size) {
+        stamp++;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int level = trail.level(Lit.var(lits[i]));
+            if (levelStamps[level] != stamp) {
+                levelStamps[level] = stamp;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * @return number of distinct decision levels among the literals of
+     *         clause cref
+     */
+    private int clauseLbd(int cref) {
+        stamp++;
+        int count = 0;
+        for (int i = 0; i < clauses.size(cref); i++) {
+            int level = trail.level(Lit.var(clauses.lit(cref, i)));
+            if (levelStamps[level] != stamp) {
+                levelStamps[level] = stamp;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void bumpClause(int cref) {
+        double activity = clauses.activity(cref) + clauseIncrement;
+        clauses.setActivity(cref, (float) activity);
+        if (activity > CLAUSE_RESCALE_LIMIT) {
+            for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+                if (clauses.isLearnt(c)) clauses.setActivity(c, clauses.activity(c) / (float) CLAUSE_RESCALE_LIMIT);
+            }
+            clauseIncrement /= CLAUSE_RESCALE_LIMIT;
+        }
+    }
+
+    private void decayClauses() {
+        clauseIncrement /= CLAUSE_DECAY;
+    }
+
+    /*
+     * Delete the less useful half of the learnt clauses, then compact the
+     * arena and rebuild the watch lists and reasons to match.
+     */
+    private void reduceLearnts() {
+        reductions++;
+        nextReduce = conflicts + reduceFirst + (long) reductions * reduceIncrement;
+
+        Integer[] candidates = new Integer[numLearnts];
+        int n = 0;
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            if (!clauses.isLearnt(c) || clauses.size(c) <= 2 || clauses.lbd(c) <= 2 || isLocked(c)) continue;
+            candidates[n++] = c;
+        }
+        // worst first: highest LBD, then lowest activity
+        Arrays.sort(candidates, 0, n, (a, b) -> {
+            if (clauses.lbd(a) != clauses.lbd(b)) return clauses.lbd(b) - clauses.lbd(a);
+            return Float.compare(clauses.activity(a), clauses.activity(b));
+        });
+        for (int i = 0; i < numLearnts / 2 && i < n; i++) {
+            int c = candidates[i];
+            clauses.markDeleted(c);
+            numLearnts--;
+            if (proof != null) {
+                int[] lits = clauses.toArray(c);
+                proof.delete(lits, 0, lits.length);
+            }
+        }
+
+        // reasons move with their clauses
+        long[] reasons = new long[trail.size()];
+        int numReasons = 0;
+        for (int i = 0; i < trail.size(); i++) {
+            int var = Lit.var(trail.get(i));
+            int reason = trail.reason(var);
+            if (reason >= 0) reasons[numReasons++] = ((long) reason << 32) | var;
+        }
+        Arrays.sort(reasons, 0, numReasons);
+        int[] refs = new int[numReasons];
+        for (int i = 0; i < numReasons; i++) {
+            refs[i] = (int) (reasons[i] >>> 32);
+        }
+        clauses.compact(refs, numReasons);
+        for (int i = 0; i < numReasons; i++) {
+            trail.setReason((int) reasons[i], refs[i]);
+        }
+
+        watches.clear();
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            watches.watch(clauses.lit(c, 0), c, clauses.lit(c, 1));
+            watches.watch(clauses.lit(c, 1), c, clauses.lit(c, 0));
+        }
+    }
+
+    /*
+     * @return true iff clause cref is the reason of a current assignment
+     */
+    private boolean isLocked(int cref) {
+        int var = Lit.var(clauses.lit(cref, 0));
+        return trail.isAssigned(var) && trail.reason(var) == cref;
+    }
+
+    /*
+     * Undo every assignment made above the given decision level.
+     */
+    private void cancelUntil(int level) {
+        if (trail.decisionLevel() <= level) return;
+        int limit = trail.levelStart(level + 1);
+        for (int i = counted - 1; i >= limit; i--) {
+            constraints.restore(Lit.not(trail.get(i)));
+        }
+        counted = Math.min(counted, limit);
+        for (int i = trail.size() - 1; i >= limit; i--) {
+            int lit = trail.get(i);
+            if (phaseSaving) phases[Lit.var(lit)] = !Lit.isNegative(lit);
+            heuristic.unassigned(Lit.var(lit));
+        }
+        trail.cancelUntil(level);
+        qhead = trail.size();
+    }
+}
@@ -0,0 +1,224 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * Contiguous storage for clauses of integer-encoded literals.
+ *
+ * All clauses live back to back in a single int array. A clause is referred
+ * to by the offset of its header (its "cref"); the header holds the number
+ * of literals, a flag word that also holds the literal block distance (LBD)
+ * of learnt clauses, and their activity as float bits; the literals follow
+ * immediately after. Clauses are therefore laid out in the order they were
+ * added, which keeps the literals visited together by propagation close
+ * together in memory.
+ *
+ * Deleting a clause only marks it; compact() then slides the remaining
+ * clauses down over the holes in place, so the space is reused without
+ * allocating a new array.
+ */
+public class ClauseArena {
+    /**
+     * Number of header words in front of the literals of every clause.
+     */
+    public static final int HEADER = 3;
+
+    private static final int LEARNT = 1;
+    private static final int DELETED = 2;
+    // the LBD is kept in the flag word above the flags
+    private static final int LBD_SHIFT = 2;
+
+    private int[] data;
+    private int end;
+    private int count;
+
+    /*
+     * Rep invariant:
+     *     0 <= end <= data.length
+     *     data[0..end) is a sequence of count clauses, each of the form
+     *     [size, flags | lbd << LBD_SHIFT, activity, lit_0, ..., lit_{size-1}]
+     */
+
+    /**
+     * Create an empty arena.
+     */
+    public ClauseArena() {
+        this(1024);
+    }
+
+    /**
+     * Create an empty arena with room for the given number of int words
+     * (literals plus HEADER words per clause) before it has to grow.
+     */
+    public ClauseArena(int capacity) {
+        data = new int[Math.max(capacity, HEADER)];
+    }
+
+    /**
+     * Append an input clause.
+     * @return the reference of the new clause
+     */
+    public int add(int[] lits) {
+        return add(lits, 0, lits.length, false);
+    }
+
+    /**
+     * Append the clause lits[from..from+length), marked learnt or not.
+     * @return the reference of the new clause
+     */
+    public int add(int[] lits, int from, int length, boolean learnt) {
+        int cref = end;
+        int needed = end + HEADER + length;
+        if (needed > data.length) {
+            data = Arrays.copyOf(data, Math.max(needed, data.length * 2));
+        }
+        data[cref] = length;
+        data[cref + 1] = learnt ? LEARNT : 0;
+        data[cref + 2] = 0;
+        System.arraycopy(lits, from, data, cref + HEADER, length);
+        end = needed;
+        count++;
+        return cref;
+    }
+
+    /**
+     * @return number of literals of clause cref
+     */
+    public int size(int cref) {
+        return data[cref];
+    }
+
+    /**
+     * @return the i-th literal of clause cref
+     */
+    public int lit(int cref, int i) {
+        return data[cref + HEADER + i];
+    }
+
+    /**
+     * Overwrite the i-th literal of clause cref.
+     */
+    public void setLit(int cref, int i, int lit) {
+        data[cref + HEADER + i] = lit;
+    }
+
+    /**
+     * @return true iff clause cref was added as a learnt clause
+     */
+    public boolean isLearnt(int cref) {
+        return (data[cref + 1] & LEARNT) != 0;
+    }
+
+    /**
+     * Mark clause cref as deleted. Its storage stays in place, and it is
+     * still visited by next(), until compact().
+     */
+    public void markDeleted(int cref) {
+        data[cref + 1] |= DELETED;
+    }
+
+    /**
+     * @return true iff clause cref has been marked deleted
+     */
+    public boolean isDeleted(int cref) {
+        return (data[cref + 1] & DELETED) != 0;
+    }
+
+    /**
+     * @return the LBD recorded for clause cref, 0 if none was
+     */
+    public int lbd(int cref) {
+        return data[cref + 1] >>> LBD_SHIFT;
+    }
+
+    /**
+     * Record the LBD of clause cref.
+     */
+    public void setLbd(int cref, int lbd) {
+        data[cref + 1] = (data[cref + 1] & ((1 << LBD_SHIFT) - 1)) | (lbd << LBD_SHIFT);
+    }
+
+    /**
+     * @return the activity of clause cref, initially 0
+     */
+    public float activity(int cref) {
+        return Float.intBitsToFloat(data[cref + 2]);
+    }
+
+    /**
+     * Set the activity of clause cref.
+     */
+    public void setActivity(int cref, float activity) {
+        data[cref + 2] = Float.floatToRawIntBits(activity);
+    }
+
+    /**
+     * Remove every clause marked deleted, moving the others down in
+     * order, and shrink the backing array if it has become mostly empty.
+     * Every other clause reference held elsewhere becomes invalid.
+     * Requires: refs[0..count) are references of clauses not marked
+     *     deleted, in increasing order
+     * @param refs references to update: each is replaced by the new
+     *            reference of its clause
+     */
+    public void compact(int[] refs, int count) {
+        int to = 0;
+        int r = 0;
+        int live = 0;
+        for (int from = 0; from < end; ) {
+            int next = from + HEADER + data[from];
+            if ((data[from + 1] & DELETED) == 0) {
+                while (r < count && refs[r] == from) refs[r++] = to;
+                if (to != from) System.arraycopy(data, from, data, to, next - from);
+                to += next - from;
+                live++;
+            }
+            from = next;
+        }
+        end = to;
+        this.count = live;
+        if (end < data.length / 4 && data.length > 1024) {
+            data = Arrays.copyOf(data, Math.max(2 * end, 1024));
+        }
+    }
+
+    /**
+     * @return a copy of the literals of clause cref
+     */
+    public int[] toArray(int cref) {
+        return Arrays.copyOfRange(data, cref + HEADER, cref + HEADER + data[cref]);
+    }
+
+    /**
+     * Clauses can be visited in order with
+     * for (int c = 0; c < arena.end(); c = arena.next(c)).
+     * @return the reference of the clause following cref
+     */
+    public int next(int cref) {
+        return cref + HEADER + data[cref];
+    }
+
+    /**
+     * @return the offset just past the last clause
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * @return number of clauses in this arena
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * The backing array, for loops that cannot afford a call per literal.
+     * The literals of clause cref are data()[cref + HEADER + i]. The array
+     * is replaced whenever the arena grows, so it must be fetched again after
+     * every add.
+     */
+    public int[] data() {
+        return data;
+    }
+}
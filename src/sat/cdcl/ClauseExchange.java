@@ -0,0 +1,71 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free ring buffer through which solvers running in parallel on the
+ * same variables pass learnt clauses to each other.
+ *
+ * Publishing claims a sequence number with a single atomic increment and
+ * stores the clause in the slot for that number, overwriting whatever the
+ * slot held capacity publications earlier. Each reader keeps its own cursor
+ * and collects the clauses published since. Sharing is best effort: a
+ * clause that is overwritten before a reader gets to it, or whose slot is
+ * still being written, is skipped, which only means that reader has to
+ * learn it for itself.
+ */
+public class ClauseExchange {
+    private static class Entry {
+        final long seq;
+        final int source;
+        final int[] lits;
+
+        Entry(long seq, int source, int[] lits) {
+            this.seq = seq;
+            this.source = source;
+            this.lits = lits;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLong head = new AtomicLong();
+
+    /*
+     * Rep invariant:
+     *     every non-null slots[i] has seq % capacity == i and seq < head
+     */
+
+    /**
+     * Create an exchange remembering the last capacity clauses published.
+     * Requires: capacity > 0
+     */
+    public ClauseExchange(int capacity) {
+        slots = new AtomicReferenceArray<Entry>(capacity);
+    }
+
+    /**
+     * Publish the clause lits[0..size) on behalf of solver source.
+     */
+    public void publish(int source, int[] lits, int size) {
+        long seq = head.getAndIncrement();
+        slots.set((int) (seq % slots.length()), new Entry(seq, source, Arrays.copyOf(lits, size)));
+    }
+
+    /**
+     * Pass every clause published since cursor by solvers other than
+     * reader, and still available, to sink.
+     * @return the cursor to collect from next time; 0 to start with
+     */
+    public long collect(long cursor, int reader, ClauseSink sink) {
+        long end = head.get();
+        long seq = Math.max(cursor, end - slots.length());
+        for (; seq < end; seq++) {
+            Entry entry = slots.get((int) (seq % slots.length()));
+            if (entry == null || entry.seq != seq || entry.source == reader) continue;
+            sink.addClause(entry.lits, 0, entry.lits.length);
+        }
+        return end;
+    }
+}
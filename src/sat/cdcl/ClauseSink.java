@@ -0,0 +1,13 @@
+package sat.cdcl;
+
+/**
+ * Something that clauses of integer-encoded literals can be streamed into,
+ * such as an IntFormula being built by a parser.
+ */
+public interface ClauseSink {
+    /**
+     * Add the clause lits[from..from+length). The sink must copy the
+     * literals if it keeps them, since the caller may reuse the array.
+     */
+    void addClause(int[] lits, int from, int length);
+}
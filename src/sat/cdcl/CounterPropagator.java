@@ -0,0 +1,218 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * Propagation of pseudo-Boolean constraints by counting, for CDCLSolver.
+ *
+ * Each constraint w_0 l_0 + ... >= bound keeps its slack: the total weight
+ * of its literals not yet false, minus the bound. Every literal has an
+ * occurrence list of the constraints it is in, so making it false costs
+ * one subtraction per constraint, and backtracking adds the weight back.
+ * A negative slack is a conflict; a literal whose weight exceeds the slack
+ * is needed by the constraint and is made true. Literals are kept heaviest
+ * first, so looking for such literals stops at the first one light enough.
+ * For a cardinality constraint that is only when the slack reaches 0.
+ *
+ * Nothing is stored for an implied literal but the constraint that
+ * implied it, as a reason below Trail.NO_REASON. Conflict analysis asks
+ * for the clause it stands for with explain: the implied literal and the
+ * literals of the constraint that were already false when it was
+ * implied.
+ */
+public class CounterPropagator {
+    private static final int NO_REASON = Trail.NO_REASON;
+
+    // the literals and weights of every constraint, back to back
+    private int[] lits = new int[64];
+    private long[] weights = new long[64];
+    private int end;
+    // per constraint: where its literals start, and one past their end
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private long[] slacks = new long[16];
+    private int count;
+    // per literal: (constraint, position in lits) of each occurrence
+    private int[][] occurs;
+    private int[] numOccurs;
+    private int[] explanation = new int[16];
+
+    /*
+     * Rep invariant:
+     *     lits[starts[c]..ends[c]) are the literals of constraint c, in
+     *     order of non-increasing weight
+     *     occurs[l][0..numOccurs[l]) are pairs (c, i), one for each
+     *     occurrence lits[i] of literal l, in constraint c
+     *     slacks[c] is the total weight of the literals of c that have not
+     *     been made false through falsified, minus its bound
+     */
+
+    /**
+     * Create a propagator with no constraints, for literals
+     * 0..numLiterals-1.
+     */
+    public CounterPropagator(int numLiterals) {
+        occurs = new int[numLiterals][];
+        numOccurs = new int[numLiterals];
+    }
+
+    /**
+     * Make sure literals 0..numLiterals-1 have occurrence lists.
+     */
+    public void ensureLiterals(int numLiterals) {
+        if (numLiterals <= occurs.length) return;
+        occurs = Arrays.copyOf(occurs, numLiterals);
+        numOccurs = Arrays.copyOf(numOccurs, numLiterals);
+    }
+
+    /**
+     * @return number of constraints
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the reason recorded for literals implied by constraint c
+     */
+    public static int reason(int c) {
+        return NO_REASON - 1 - c;
+    }
+
+    /**
+     * @return true iff reason was recorded by a constraint rather than
+     *         being a clause or NO_REASON
+     */
+    public static boolean isConstraint(int reason) {
+        return reason < NO_REASON;
+    }
+
+    /**
+     * Add the constraint sum of weights[i] over the true lits[i] >= bound,
+     * for i < size, with its slack counting every literal.
+     * Requires: the literals are unassigned and share no variable, and
+     *           every weight is positive and at most bound
+     * @return the number of the new constraint
+     */
+    public int add(int[] lits, long[] weights, int size, long bound) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * count);
+            ends = Arrays.copyOf(ends, 2 * count);
+            slacks = Arrays.copyOf(slacks, 2 * count);
+        }
+        if (end + size > this.lits.length) {
+            int capacity = Math.max(2 * this.lits.length, end + size);
+            this.lits = Arrays.copyOf(this.lits, capacity);
+            this.weights = Arrays.copyOf(this.weights, capacity);
+        }
+
+        // heaviest first
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(weights[b], weights[a]));
+
+        int c = count++;
+        starts[c] = end;
+        long slack = -bound;
+        for (int i : order) {
+            int lit = lits[i];
+            ensureLiterals(lit + 1);
+            if (occurs[lit] == null) occurs[lit] = new int[4];
+            if (numOccurs[lit] == occurs[lit].length) {
+                occurs[lit] = Arrays.copyOf(occurs[lit], 2 * numOccurs[lit]);
+            }
+            occurs[lit][numOccurs[lit]++] = c;
+            occurs[lit][numOccurs[lit]++] = end;
+            this.lits[end] = lit;
+            this.weights[end++] = weights[i];
+            slack += weights[i];
+        }
+        ends[c] = end;
+        slacks[c] = slack;
+        return c;
+    }
+
+    /**
+     * Count lit as false in every constraint it is in, then make true the
+     * literals those constraints now need.
+     * Requires: lit has just been made false on trail, and was not counted
+     *           as false since it was last restored
+     * @return the reason of a constraint that cannot be satisfied any more,
+     *         or NO_REASON
+     */
+    public int falsified(int lit, Trail trail) {
+        if (lit >= occurs.length) return NO_REASON;
+        int[] occ = occurs[lit];
+        int n = numOccurs[lit];
+        int conflict = NO_REASON;
+        // every constraint is counted before any conflict is reported, so
+        // that restore can undo exactly what was done
+        for (int i = 0; i < n; i += 2) {
+            int c = occ[i];
+            slacks[c] -= weights[occ[i + 1]];
+            if (slacks[c] < 0 && conflict == NO_REASON) conflict = reason(c);
+        }
+        if (conflict != NO_REASON) return conflict;
+        for (int i = 0; i < n; i += 2) {
+            imply(occ[i], trail);
+        }
+        return NO_REASON;
+    }
+
+    /**
+     * Undo falsified(lit, trail).
+     */
+    public void restore(int lit) {
+        if (lit >= occurs.length) return;
+        int[] occ = occurs[lit];
+        for (int i = 0; i < numOccurs[lit]; i += 2) {
+            slacks[occ[i]] += weights[occ[i + 1]];
+        }
+    }
+
+    /**
+     * Make true, with constraint c as their reason, the unassigned
+     * literals of c whose weight exceeds its slack.
+     */
+    public void imply(int c, Trail trail) {
+        long slack = slacks[c];
+        for (int i = starts[c]; i < ends[c] && weights[i] > slack; i++) {
+            if (trail.valueOf(lits[i]) == Trail.UNASSIGNED) trail.assign(lits[i], reason(c));
+        }
+    }
+
+    /**
+     * Put into explanation() the clause that a constraint reason stands
+     * for: if lit is a literal it implied, lit first, then the literals of
+     * the constraint that were false before lit was assigned; if lit is -1,
+     * for a conflict, every literal of the constraint that is false.
+     * Requires: isConstraint(reason)
+     * @return the number of literals of the clause
+     */
+    public int explain(int reason, int lit, Trail trail) {
+        int c = NO_REASON - 1 - reason;
+        int size = 0;
+        if (ends[c] - starts[c] + 1 > explanation.length) {
+            explanation = new int[ends[c] - starts[c] + 1];
+        }
+        if (lit >= 0) explanation[size++] = lit;
+        int before = lit >= 0 ? trail.position(Lit.var(lit)) : Integer.MAX_VALUE;
+        for (int i = starts[c]; i < ends[c]; i++) {
+            int q = lits[i];
+            if (trail.valueOf(q) == Trail.FALSE && trail.position(Lit.var(q)) < before) {
+                explanation[size++] = q;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * The backing array of the last explanation; only as many entries as
+     * explain returned are meaningful.
+     */
+    public int[] explanation() {
+        return explanation;
+    }
+}
@@ -0,0 +1,23 @@
+package sat.cdcl;
+
+/**
+ * Restart after every interval conflicts.
+ */
+public class FixedRestarts implements RestartPolicy {
+    private final int interval;
+    private int conflicts;
+
+    /**
+     * Requires: interval > 0
+     */
+    public FixedRestarts(int interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public boolean conflict(int lbd) {
+        if (++conflicts < interval) return false;
+        conflicts = 0;
+        return true;
+    }
+}
@@ -0,0 +1,27 @@
+package sat.cdcl;
+
+/**
+ * Restart after first conflicts, then after a number of conflicts that
+ * grows by factor from one restart to the next.
+ */
+public class GeometricRestarts implements RestartPolicy {
+    private final double factor;
+    private double limit;
+    private int conflicts;
+
+    /**
+     * Requires: first > 0 and factor >= 1
+     */
+    public GeometricRestarts(int first, double factor) {
+        this.limit = first;
+        this.factor = factor;
+    }
+
+    @Override
+    public boolean conflict(int lbd) {
+        if (++conflicts < limit) return false;
+        conflicts = 0;
+        limit *= factor;
+        return true;
+    }
+}
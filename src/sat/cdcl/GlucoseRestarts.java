@@ -0,0 +1,60 @@
+package sat.cdcl;
+
+/**
+ * Glucose-style adaptive restarts: restart when the average literal block
+ * distance of the last window learnt clauses exceeds the average over the
+ * whole search by a margin. A rising LBD means the recent clauses are of
+ * poor quality, which is taken as a sign that the current decisions lead
+ * nowhere useful.
+ */
+public class GlucoseRestarts implements RestartPolicy {
+    private final double margin;
+    private final int[] recent;
+    private int recentCount;
+    private int next;
+    private long recentSum;
+    private long totalSum;
+    private long totalCount;
+
+    /**
+     * Create the policy with the usual window of 50 conflicts and margin
+     * 0.8.
+     */
+    public GlucoseRestarts() {
+        this(50, 0.8);
+    }
+
+    /**
+     * Requires: window > 0 and 0 < margin <= 1
+     * @param window number of recent conflicts averaged
+     * @param margin restart when margin * recent average > total average
+     */
+    public GlucoseRestarts(int window, double margin) {
+        this.recent = new int[window];
+        this.margin = margin;
+    }
+
+    @Override
+    public boolean conflict(int lbd) {
+        totalSum += lbd;
+        totalCount++;
+        if (recentCount == recent.length) {
+            recentSum -= recent[next];
+        } else {
+            recentCount++;
+        }
+        recent[next] = lbd;
+        recentSum += lbd;
+        next = (next + 1) % recent.length;
+
+        if (recentCount < recent.length) return false;
+        double recentAverage = (double) recentSum / recent.length;
+        double totalAverage = (double) totalSum / totalCount;
+        if (recentAverage * margin <= totalAverage) return false;
+        // start a fresh window after restarting
+        recentCount = 0;
+        recentSum = 0;
+        next = 0;
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package sat.cdcl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import sat.env.Environment;
+import sat.env.Variable;
+import sat.formula.Clause;
+import sat.formula.Formula;
+import sat.formula.Literal;
+import sat.formula.NegLiteral;
+import sat.formula.PosLiteral;
+import sat.formula.PseudoBoolean;
+
+/**
+ * A CNF formula in primitive form: variables numbered densely from 0,
+ * literals encoded as described in Lit, and clauses stored in a ClauseArena.
+ * Converts to and from the object representation of Formula.
+ *
+ * Like a Formula, it may also hold pseudo-Boolean constraints, which
+ * CDCLSolver handles natively. Tools that work on the clauses alone take
+ * the CNF encoding from sat.encoding.ConstraintEncoder instead.
+ *
+ * A variable that was never given a Variable is named by its DIMACS number,
+ * that is, variable v is named v+1, with underscores in front while that
+ * name belongs to another variable, as it can when the numbered variables
+ * are fresh ones added after named ones.
+ */
+public class IntFormula implements ClauseSink {
+    private final ClauseArena clauses;
+    private final ArrayList<PbConstraint> constraints = new ArrayList<PbConstraint>();
+    private final ArrayList<Variable> variables = new ArrayList<Variable>();
+    private final HashMap<String, Integer> index = new HashMap<String, Integer>();
+
+    /*
+     * Rep invariant:
+     *     index maps the name of every non-null variables.get(v) to v
+     *     every literal in clauses and constraints is over a variable
+     *     < numVars()
+     */
+
+    /**
+     * Create a formula with no variables and no clauses.
+     */
+    public IntFormula() {
+        clauses = new ClauseArena();
+    }
+
+    /**
+     * Create a formula with numVars anonymous variables and no clauses, with
+     * room for the given number of clauses and literals.
+     */
+    public IntFormula(int numVars, int numClauses, int numLiterals) {
+        clauses = new ClauseArena(numClauses * ClauseArena.HEADER + numLiterals);
+        ensureVars(numVars);
+    }
+
+    /**
+     * Create a formula with no clauses or constraints over the variables of
+     * other, with the same numbers and names.
+     */
+    public IntFormula(IntFormula other) {
+        clauses = new ClauseArena();
+        variables.addAll(other.variables);
+        index.putAll(other.index);
+    }
+
+    /**
+     * Convert a Formula to primitive form. Variables are numbered in the
+     * order they are first met.
+     * Requires: formula is non-null
+     */
+    public static IntFormula encode(Formula formula) {
+        IntFormula out = new IntFormula();
+        int[] lits = new int[16];
+        for (Clause c : formula.getClauses()) {
+            if (c.size() > lits.length) lits = new int[c.size()];
+            int i = 0;
+            for (Literal l : c) {
+                lits[i++] = out.toLit(l);
+            }
+            out.addClause(lits, 0, i);
+        }
+        for (PseudoBoolean c : formula.getConstraints()) {
+            out.addConstraint(out.toConstraint(c));
+        }
+        return out;
+    }
+
+    /**
+     * @return the number of v, allocating a new variable if v has not
+     *         been seen before
+     */
+    public int indexOf(Variable v) {
+        Integer var = index.get(v.getName());
+        if (var == null) {
+            var = variables.size();
+            index.put(v.getName(), var);
+            variables.add(v);
+        }
+        return var;
+    }
+
+    /**
+     * Make sure variables 0..numVars-1 exist.
+     */
+    public void ensureVars(int numVars) {
+        while (variables.size() < numVars) {
+            variables.add(null);
+        }
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int numVars() {
+        return variables.size();
+    }
+
+    /**
+     * @return the variable numbered var
+     */
+    public Variable getVariable(int var) {
+        Variable v = variables.get(var);
+        if (v == null) {
+            String name = Integer.toString(var + 1);
+            while (index.containsKey(name)) {
+                name = "_" + name;
+            }
+            v = new Variable(name);
+            variables.set(var, v);
+            index.put(v.getName(), var);
+        }
+        return v;
+    }
+
+    /**
+     * Add the clause lits[from..from+length), creating any variables it
+     * mentions.
+     */
+    @Override
+    public void addClause(int[] lits, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            ensureVars(Lit.var(lits[i]) + 1);
+        }
+        clauses.add(lits, from, length, false);
+    }
+
+    /**
+     * Add a clause, creating any variables it mentions.
+     */
+    public void addClause(int... lits) {
+        addClause(lits, 0, lits.length);
+    }
+
+    /**
+     * Add a pseudo-Boolean constraint, creating any variables it mentions.
+     */
+    public void addConstraint(PbConstraint c) {
+        for (int i = 0; i < c.size(); i++) {
+            ensureVars(Lit.var(c.lit(i)) + 1);
+        }
+        constraints.add(c);
+    }
+
+    /**
+     * @return the pseudo-Boolean constraints of this formula, in the order
+     *         they were added; not to be modified
+     */
+    public List<PbConstraint> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * @return the clauses of this formula
+     */
+    public ClauseArena getClauses() {
+        return clauses;
+    }
+
+    /**
+     * @return number of clauses
+     */
+    public int numClauses() {
+        return clauses.count();
+    }
+
+    /**
+     * Convert back to object form. Clauses containing a literal and its
+     * negation are dropped since they are always true.
+     * @return the equivalent Formula
+     */
+    public Formula decode() {
+        Formula f = new Formula();
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            Clause clause = new Clause();
+            for (int i = 0; i < clauses.size(c) && clause != null; i++) {
+                clause = clause.add(toLiteral(clauses.lit(c, i)));
+            }
+            if (clause != null) f = f.addClause(clause);
+        }
+        for (PbConstraint c : constraints) {
+            Literal[] lits = new Literal[c.size()];
+            long[] weights = new long[c.size()];
+            for (int i = 0; i < c.size(); i++) {
+                lits[i] = toLiteral(c.lit(i));
+                weights[i] = c.weight(i);
+            }
+            f = f.addConstraint(PseudoBoolean.atLeast(c.bound(), lits, weights));
+        }
+        return f;
+    }
+
+    /**
+     * @return the encoded form of l, allocating a new variable if the
+     *         variable of l has not been seen before
+     */
+    public int toLit(Literal l) {
+        return Lit.make(indexOf(l.getVariable()), l instanceof NegLiteral);
+    }
+
+    /**
+     * @return the primitive form of c, allocating new variables for the
+     *         variables of c that have not been seen before
+     */
+    public PbConstraint toConstraint(PseudoBoolean c) {
+        int[] lits = new int[c.size()];
+        long[] weights = new long[c.size()];
+        int i = 0;
+        for (Literal l : c.getLiterals()) {
+            lits[i++] = toLit(l);
+        }
+        i = 0;
+        for (long w : c.getWeights()) {
+            weights[i++] = w;
+        }
+        return new PbConstraint(lits, weights, c.getBound());
+    }
+
+    /**
+     * @return the Literal object for an encoded literal
+     */
+    public Literal toLiteral(int lit) {
+        Variable v = getVariable(Lit.var(lit));
+        if (Lit.isNegative(lit)) return NegLiteral.make(v);
+        else return PosLiteral.make(v);
+    }
+
+    /**
+     * @return an environment binding variable v to Bool.TRUE iff model[v]
+     *         is true, for every v < model.length
+     */
+    public Environment toEnvironment(boolean[] model) {
+        Environment env = new Environment();
+        for (int var = 0; var < model.length; var++) {
+            if (model[var]) env = env.putTrue(getVariable(var));
+            else env = env.putFalse(getVariable(var));
+        }
+        return env;
+    }
+}
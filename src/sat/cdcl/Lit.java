@@ -0,0 +1,61 @@
+package sat.cdcl;
+
+/**
+ * Static helpers for integer-encoded literals.
+ *
+ * Variables are numbered densely from 0. The literal over variable v is
+ * encoded as 2*v when positive and 2*v+1 when negative, so a literal and its
+ * negation differ only in the lowest bit, and literals can index arrays of
+ * size 2*numVars directly.
+ */
+public final class Lit {
+
+    private Lit() {
+    }
+
+    /**
+     * @return the literal over var, negative iff negative is true
+     */
+    public static int make(int var, boolean negative) {
+        return (var << 1) | (negative ? 1 : 0);
+    }
+
+    /**
+     * @return the variable of lit
+     */
+    public static int var(int lit) {
+        return lit >> 1;
+    }
+
+    /**
+     * @return true iff lit is a negative literal
+     */
+    public static boolean isNegative(int lit) {
+        return (lit & 1) != 0;
+    }
+
+    /**
+     * @return the negation of lit
+     */
+    public static int not(int lit) {
+        return lit ^ 1;
+    }
+
+    /**
+     * Convert from DIMACS numbering, where variables start at 1 and negative
+     * literals are written with a minus sign.
+     * Requires: dimacs != 0
+     * @return the encoded literal
+     */
+    public static int fromDimacs(int dimacs) {
+        return dimacs > 0 ? (dimacs - 1) << 1 : ((-dimacs - 1) << 1) | 1;
+    }
+
+    /**
+     * @return the DIMACS form of lit
+     */
+    public static int toDimacs(int lit) {
+        int var = (lit >> 1) + 1;
+        return (lit & 1) == 0 ? var : -var;
+    }
+}
@@ -0,0 +1,49 @@
+package sat.cdcl;
+
+/**
+ * Restart after unit times the terms of the Luby sequence
+ * 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ... conflicts. The sequence
+ * is within a constant factor of optimal for search whose runtime
+ * distribution is unknown, which suits heavy-tailed behaviour.
+ */
+public class LubyRestarts implements RestartPolicy {
+    private final int unit;
+    private int restarts;
+    private long limit;
+    private int conflicts;
+
+    /**
+     * Requires: unit > 0
+     */
+    public LubyRestarts(int unit) {
+        this.unit = unit;
+        this.limit = unit * luby(0);
+    }
+
+    @Override
+    public boolean conflict(int lbd) {
+        if (++conflicts < limit) return false;
+        conflicts = 0;
+        limit = unit * luby(++restarts);
+        return true;
+    }
+
+    /**
+     * @return the i-th term of the Luby sequence, counting from 0
+     */
+    public static long luby(int i) {
+        // find the finite subsequence 1..2^(seq) that contains index i
+        int size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+}
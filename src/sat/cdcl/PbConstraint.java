@@ -0,0 +1,109 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * A pseudo-Boolean constraint in primitive form: w_0 l_0 + ... + w_{n-1}
+ * l_{n-1} >= bound, where the l_i are literals encoded as in Lit, each
+ * counting its positive weight w_i when it is true. A cardinality
+ * constraint is one whose weights are all 1; a clause is one whose bound
+ * is 1.
+ *
+ * Immutable.
+ */
+public class PbConstraint {
+    private final int[] lits;
+    private final long[] weights;
+    private final long bound;
+
+    /*
+     * Rep invariant:
+     *     lits.length == weights.length
+     *     every weight is positive, and no two literals share a variable
+     */
+
+    /**
+     * Make the constraint sum of weights[i] over the true lits[i] >= bound.
+     * Requires: lits and weights have the same length, every weight is
+     *           positive, and no two literals share a variable
+     */
+    public PbConstraint(int[] lits, long[] weights, long bound) {
+        this.lits = lits.clone();
+        this.weights = weights.clone();
+        this.bound = bound;
+    }
+
+    /**
+     * Make the cardinality constraint "at least k of lits are true".
+     * Requires: no two literals share a variable
+     */
+    public static PbConstraint atLeast(int[] lits, int k) {
+        long[] weights = new long[lits.length];
+        Arrays.fill(weights, 1);
+        return new PbConstraint(lits, weights, k);
+    }
+
+    /**
+     * Make the cardinality constraint "at most k of lits are true", which
+     * is "at least lits.length - k of their negations are true".
+     * Requires: no two literals share a variable
+     */
+    public static PbConstraint atMost(int[] lits, int k) {
+        int[] negated = new int[lits.length];
+        for (int i = 0; i < lits.length; i++) {
+            negated[i] = Lit.not(lits[i]);
+        }
+        return atLeast(negated, lits.length - k);
+    }
+
+    /**
+     * @return number of literals
+     */
+    public int size() {
+        return lits.length;
+    }
+
+    /**
+     * @return the i-th literal
+     */
+    public int lit(int i) {
+        return lits[i];
+    }
+
+    /**
+     * @return the weight of the i-th literal
+     */
+    public long weight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * @return the least total weight of true literals that satisfies the
+     *         constraint
+     */
+    public long bound() {
+        return bound;
+    }
+
+    /**
+     * @return true iff every weight is 1
+     */
+    public boolean isCardinality() {
+        for (long w : weights) {
+            if (w != 1) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true iff model, in which model[v] is true iff variable v is
+     *         true, satisfies the constraint
+     */
+    public boolean isSatisfiedBy(boolean[] model) {
+        long sum = 0;
+        for (int i = 0; i < lits.length; i++) {
+            if (model[Lit.var(lits[i])] != Lit.isNegative(lits[i])) sum += weights[i];
+        }
+        return sum >= bound;
+    }
+}
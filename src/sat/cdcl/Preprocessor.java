@@ -0,0 +1,692 @@
+package sat.cdcl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Simplifies an IntFormula before search, in the style of SatELite:
+ *
+ * - units are propagated at the root, removing satisfied clauses and false
+ *   literals;
+ * - backward subsumption removes every clause that contains all the
+ *   literals of another one;
+ * - self-subsuming resolution removes literal not-l from a clause D when
+ *   another clause C contains l and otherwise only literals of D, since
+ *   resolving C and D gives D without not-l;
+ * - bounded variable elimination replaces all the clauses of a variable by
+ *   their non-tautological resolvents on it, when there are no more
+ *   resolvents than clauses;
+ * - equivalent literals, the strongly connected components of the
+ *   implication graph of the binary clauses, are replaced throughout by
+ *   one representative each;
+ * - failed literal probing propagates each value of each variable: a value
+ *   that leads to a conflict is a failed literal, whose negation is a unit,
+ *   and a literal implied by both values is a unit as well.
+ *
+ * Candidates for subsumption are found through per-literal occurrence lists,
+ * and most pairs are ruled out by comparing 64-bit clause signatures (one
+ * bit per variable modulo 64) before any literal is looked at.
+ *
+ * The simplified formula is equisatisfiable with the original and has the
+ * same variables. extend() turns a model of it into a model of the
+ * original, giving eliminated variables values that satisfy their removed
+ * clauses.
+ */
+public class Preprocessor {
+    // no elimination of a variable occurring more often than this both ways
+    private static final int OCCURRENCE_LIMIT = 10;
+    // no probing beyond this many variables per round
+    private static final int PROBE_LIMIT = 20000;
+    private static final int MAX_ROUNDS = 3;
+    private static final int NO_SUBSUMPTION = -2;
+    private static final int SUBSUMES = -1;
+
+    private final IntFormula input;
+    private final int numVars;
+
+    // the clauses, null once removed; units are kept in values instead
+    private final ArrayList<int[]> clauses = new ArrayList<int[]>();
+    private long[] signatures = new long[64];
+    // ids of clauses containing each literal, possibly stale
+    private final int[][] occurrences;
+    private final int[] occurrenceSizes;
+
+    private final byte[] values;
+    private final int[] units;
+    private int unitsHead;
+    private int unitsSize;
+
+    private final ArrayDeque<Integer> subsumptionQueue = new ArrayDeque<Integer>();
+    private final boolean[] frozen;
+    private final boolean[] eliminated;
+    // removed clauses of eliminated variables, each with its pivot first
+    private final ArrayList<int[]> eliminatedClauses = new ArrayList<int[]>();
+
+    private boolean ok = true;
+    private boolean simplified;
+
+    /*
+     * Rep invariant:
+     *     every clause is sorted, has at least two literals, none of them
+     *     assigned in values after propagate(), and no two literals of
+     *     the same variable
+     *     occurrences[l][0..occurrenceSizes[l]) includes the id of every
+     *     clause containing l
+     *     no clause contains an eliminated variable
+     */
+
+    /**
+     * Prepare to simplify formula, which is not modified.
+     * Requires: formula is non-null and has no constraints
+     * @throws IllegalArgumentException if formula has constraints
+     */
+    public Preprocessor(IntFormula formula) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("the preprocessor takes clauses only; encode the constraints first");
+        }
+        this.input = formula;
+        this.numVars = formula.numVars();
+        occurrences = new int[2 * numVars][];
+        occurrenceSizes = new int[2 * numVars];
+        for (int l = 0; l < 2 * numVars; l++) {
+            occurrences[l] = new int[4];
+        }
+        values = new byte[numVars];
+        units = new int[numVars];
+        frozen = new boolean[numVars];
+        eliminated = new boolean[numVars];
+    }
+
+    /**
+     * Keep var from being eliminated, for instance because it is going to
+     * be assumed or to appear in clauses added later.
+     * Requires: simplify() has not been called
+     */
+    public void freeze(int var) {
+        frozen[var] = true;
+    }
+
+    /**
+     * Run the simplifications.
+     * @return false iff the formula was found unsatisfiable
+     */
+    public boolean simplify() {
+        if (simplified) return ok;
+        simplified = true;
+
+        ClauseArena in = input.getClauses();
+        for (int c = 0; c < in.end() && ok; c = in.next(c)) {
+            addClause(in.toArray(c));
+        }
+        propagate();
+        subsumeQueued();
+
+        for (int round = 0; round < MAX_ROUNDS && ok; round++) {
+            boolean changed = substituteEquivalences();
+            if (ok) changed |= probeFailedLiterals();
+            if (ok) changed |= eliminateVariables();
+            if (!changed) break;
+        }
+        return ok;
+    }
+
+    /**
+     * @return the simplified formula, over the same variables as the
+     *         original; units found are left out, and restored by extend(),
+     *         except those of frozen variables
+     * Requires: simplify() has returned true
+     */
+    public IntFormula getFormula() {
+        IntFormula out = new IntFormula(input);
+        for (int var = 0; var < numVars; var++) {
+            if (frozen[var] && values[var] != Trail.UNASSIGNED) {
+                out.addClause(Lit.make(var, values[var] == Trail.FALSE));
+            }
+        }
+        for (int[] c : clauses) {
+            if (c != null) out.addClause(c);
+        }
+        return out;
+    }
+
+    /**
+     * @return number of variables eliminated
+     */
+    public int numEliminated() {
+        int count = 0;
+        for (boolean e : eliminated) {
+            if (e) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Turn a model of the simplified formula into one of the original.
+     * Requires: simplify() has returned true
+     * @param model model[v] is the value of variable v; variables beyond
+     *            its end are taken to be false
+     * @return a model of the original formula
+     */
+    public boolean[] extend(boolean[] model) {
+        boolean[] out = Arrays.copyOf(model, Math.max(model.length, numVars));
+        for (int var = 0; var < numVars; var++) {
+            if (values[var] != Trail.UNASSIGNED) out[var] = values[var] == Trail.TRUE;
+        }
+        // later eliminations may depend on earlier ones, so undo in reverse
+        for (int i = eliminatedClauses.size() - 1; i >= 0; i--) {
+            int[] c = eliminatedClauses.get(i);
+            boolean satisfied = false;
+            for (int lit : c) {
+                if (out[Lit.var(lit)] != Lit.isNegative(lit)) {
+                    satisfied = true;
+                    break;
+                }
+            }
+            if (!satisfied) out[Lit.var(c[0])] = !Lit.isNegative(c[0]);
+        }
+        return out;
+    }
+
+    /*
+     * Add a clause, simplified by the current units, and queue it for
+     * subsumption.
+     */
+    private void addClause(int[] lits) {
+        int[] c = lits.clone();
+        Arrays.sort(c);
+        int size = 0;
+        for (int i = 0; i < c.length; i++) {
+            int lit = c[i];
+            byte value = valueOf(lit);
+            if (value == Trail.TRUE) return;
+            if (value == Trail.FALSE) continue;
+            if (size > 0 && c[size - 1] == lit) continue;
+            if (size > 0 && c[size - 1] == Lit.not(lit)) return;
+            c[size++] = lit;
+        }
+
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            assign(c[0]);
+        } else {
+            int id = clauses.size();
+            c = Arrays.copyOf(c, size);
+            clauses.add(c);
+            if (id == signatures.length) signatures = Arrays.copyOf(signatures, id * 2);
+            signatures[id] = signature(c);
+            for (int lit : c) {
+                addOccurrence(lit, id);
+            }
+            subsumptionQueue.add(id);
+        }
+    }
+
+    private void removeClause(int id) {
+        clauses.set(id, null);
+    }
+
+    /*
+     * Remove lit from clause id, which contains it.
+     */
+    private void strengthen(int id, int lit) {
+        int[] c = clauses.get(id);
+        if (c.length == 2) {
+            removeClause(id);
+            assign(c[0] == lit ? c[1] : c[0]);
+            return;
+        }
+        int[] shorter = new int[c.length - 1];
+        int k = 0;
+        for (int l : c) {
+            if (l != lit) shorter[k++] = l;
+        }
+        clauses.set(id, shorter);
+        signatures[id] = signature(shorter);
+        subsumptionQueue.add(id);
+    }
+
+    private void assign(int lit) {
+        byte value = valueOf(lit);
+        if (value == Trail.FALSE) ok = false;
+        if (value != Trail.UNASSIGNED) return;
+        values[Lit.var(lit)] = Lit.isNegative(lit) ? Trail.FALSE : Trail.TRUE;
+        units[unitsSize++] = lit;
+    }
+
+    private byte valueOf(int lit) {
+        byte value = values[Lit.var(lit)];
+        return Lit.isNegative(lit) ? (byte) -value : value;
+    }
+
+    /*
+     * Remove the clauses satisfied by the units found so far, and the
+     * literals they make false.
+     */
+    private void propagate() {
+        while (ok && unitsHead < unitsSize) {
+            int lit = units[unitsHead++];
+            int n = liveOccurrences(lit);
+            for (int i = 0; i < n; i++) {
+                removeClause(occurrences[lit][i]);
+            }
+            int notLit = Lit.not(lit);
+            n = liveOccurrences(notLit);
+            int[] ids = Arrays.copyOf(occurrences[notLit], n);
+            for (int id : ids) {
+                if (clauses.get(id) != null) strengthen(id, notLit);
+            }
+        }
+    }
+
+    /*
+     * Use every queued clause to subsume or strengthen others, until the
+     * queue is empty.
+     */
+    private void subsumeQueued() {
+        while (ok && !subsumptionQueue.isEmpty()) {
+            int id = subsumptionQueue.poll();
+            if (clauses.get(id) != null) backwardSubsume(id);
+            propagate();
+        }
+    }
+
+    /*
+     * Remove the clauses subsumed by clause id, and strengthen the ones it
+     * self-subsumes. Every such clause contains a literal of id's variable
+     * with the fewest occurrences.
+     */
+    private void backwardSubsume(int id) {
+        int[] c = clauses.get(id);
+        int best = c[0];
+        for (int lit : c) {
+            if (occurrenceSizes[lit] + occurrenceSizes[Lit.not(lit)]
+                    < occurrenceSizes[best] + occurrenceSizes[Lit.not(best)]) {
+                best = lit;
+            }
+        }
+
+        for (int lit : new int[] { best, Lit.not(best) }) {
+            int n = liveOccurrences(lit);
+            int[] ids = Arrays.copyOf(occurrences[lit], n);
+            for (int other : ids) {
+                int[] d = clauses.get(other);
+                if (other == id || d == null || d.length < c.length) continue;
+                if ((signatures[id] & ~signatures[other]) != 0) continue;
+                int result = subsumes(c, d);
+                if (result == SUBSUMES) {
+                    removeClause(other);
+                } else if (result != NO_SUBSUMPTION) {
+                    strengthen(other, result);
+                    if (!ok) return;
+                }
+            }
+        }
+    }
+
+    /*
+     * Requires: c and d are sorted
+     * @return SUBSUMES if every literal of c is in d; the literal of d to
+     *         remove if that holds except for one literal of c whose
+     *         negation is in d; NO_SUBSUMPTION otherwise
+     */
+    private static int subsumes(int[] c, int[] d) {
+        int flipped = SUBSUMES;
+        int j = 0;
+        for (int i = 0; i < c.length; i++) {
+            int var = Lit.var(c[i]);
+            while (j < d.length && Lit.var(d[j]) < var) j++;
+            if (j == d.length || Lit.var(d[j]) != var) return NO_SUBSUMPTION;
+            if (d[j] != c[i]) {
+                if (flipped != SUBSUMES) return NO_SUBSUMPTION;
+                flipped = d[j];
+            }
+            j++;
+        }
+        return flipped;
+    }
+
+    /*
+     * Replace every literal by the representative of its strongly connected
+     * component in the binary implication graph, where clause (a or b)
+     * gives the edges not-a -> b and not-b -> a. The components are found
+     * with Tarjan's algorithm, run with an explicit stack.
+     * @return true iff some variable was substituted
+     */
+    private boolean substituteEquivalences() {
+        int numLits = 2 * numVars;
+        // the graph in compressed rows: edges of l are targets[starts[l]..starts[l+1])
+        int[] starts = new int[numLits + 1];
+        for (int[] c : clauses) {
+            if (c != null && c.length == 2) {
+                starts[Lit.not(c[0]) + 1]++;
+                starts[Lit.not(c[1]) + 1]++;
+            }
+        }
+        for (int l = 0; l < numLits; l++) {
+            starts[l + 1] += starts[l];
+        }
+        int[] targets = new int[starts[numLits]];
+        int[] fill = Arrays.copyOf(starts, numLits);
+        for (int[] c : clauses) {
+            if (c != null && c.length == 2) {
+                targets[fill[Lit.not(c[0])]++] = c[1];
+                targets[fill[Lit.not(c[1])]++] = c[0];
+            }
+        }
+
+        int[] representative = new int[numLits];
+        for (int l = 0; l < numLits; l++) {
+            representative[l] = l;
+        }
+        int[] order = new int[numLits];
+        Arrays.fill(order, -1);
+        int[] low = new int[numLits];
+        int[] next = new int[numLits];
+        boolean[] onStack = new boolean[numLits];
+        int[] stack = new int[numLits];
+        int[] calls = new int[numLits];
+        int stackSize = 0;
+        int counter = 0;
+        // component[v] is the number of the last component containing v
+        int[] component = new int[numVars];
+        int components = 0;
+        boolean any = false;
+
+        for (int root = 0; root < numLits; root++) {
+            if (order[root] >= 0 || starts[root] == starts[root + 1]) continue;
+            int callsSize = 0;
+            calls[callsSize++] = root;
+            order[root] = low[root] = counter++;
+            next[root] = starts[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (callsSize > 0) {
+                int v = calls[callsSize - 1];
+                if (next[v] < starts[v + 1]) {
+                    int w = targets[next[v]++];
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        next[w] = starts[w];
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        calls[callsSize++] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                    continue;
+                }
+                callsSize--;
+                if (callsSize > 0) {
+                    int parent = calls[callsSize - 1];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+                if (low[v] != order[v]) continue;
+
+                // v is the root of a component, which is on top of the stack
+                int bottom = stackSize;
+                do {
+                    onStack[stack[--bottom]] = false;
+                } while (stack[bottom] != v);
+                // prefer a frozen representative, then the lowest variable,
+                // so that the mirror component picks the negation
+                int rep = stack[bottom];
+                components++;
+                for (int i = bottom; i < stackSize; i++) {
+                    int l = stack[i];
+                    // a literal equivalent to its own negation
+                    if (component[Lit.var(l)] == components) {
+                        ok = false;
+                        return false;
+                    }
+                    component[Lit.var(l)] = components;
+                    if (frozen[Lit.var(l)] && !frozen[Lit.var(rep)]
+                            || frozen[Lit.var(l)] == frozen[Lit.var(rep)] && Lit.var(l) < Lit.var(rep)) {
+                        rep = l;
+                    }
+                }
+                for (int i = bottom; i < stackSize; i++) {
+                    representative[stack[i]] = rep;
+                }
+                if (stackSize - bottom > 1) any = true;
+                stackSize = bottom;
+            }
+        }
+        if (!any) return false;
+
+        // a variable can only be replaced if it is not frozen
+        boolean changed = false;
+        for (int var = 0; var < numVars; var++) {
+            int pos = Lit.make(var, false);
+            if (representative[pos] == pos || frozen[var]) {
+                representative[pos] = pos;
+                representative[Lit.not(pos)] = Lit.not(pos);
+            } else {
+                representative[Lit.not(pos)] = Lit.not(representative[pos]);
+            }
+        }
+        int numClauses = clauses.size();
+        for (int id = 0; id < numClauses && ok; id++) {
+            int[] c = clauses.get(id);
+            if (c == null) continue;
+            boolean touched = false;
+            for (int lit : c) {
+                if (representative[lit] != lit) touched = true;
+            }
+            if (!touched) continue;
+            int[] mapped = new int[c.length];
+            for (int i = 0; i < c.length; i++) {
+                mapped[i] = representative[c[i]];
+            }
+            removeClause(id);
+            addClause(mapped);
+        }
+        for (int var = 0; var < numVars; var++) {
+            int pos = Lit.make(var, false);
+            if (representative[pos] == pos) continue;
+            // var <-> rep, as two clauses that extend() can replay
+            int rep = representative[pos];
+            eliminated[var] = true;
+            eliminatedClauses.add(new int[] { pos, Lit.not(rep) });
+            eliminatedClauses.add(new int[] { Lit.not(pos), rep });
+            changed = true;
+        }
+        propagate();
+        subsumeQueued();
+        return changed;
+    }
+
+    /*
+     * Probe both values of every free variable with a CDCLSolver over the
+     * current clauses, and assign the units found.
+     * @return true iff some unit was found
+     */
+    private boolean probeFailedLiterals() {
+        CDCLSolver solver = new CDCLSolver(getFormula());
+        int[] posImplied = new int[numVars];
+        int[] negImplied = new int[numVars];
+        boolean[] marked = new boolean[2 * numVars];
+        int[] found = new int[numVars];
+        int numFound = 0;
+        int probed = 0;
+
+        for (int var = 0; var < numVars && probed < PROBE_LIMIT; var++) {
+            if (eliminated[var] || values[var] != Trail.UNASSIGNED || solver.isAssigned(var)) continue;
+            int pos = Lit.make(var, false);
+            int neg = Lit.make(var, true);
+            if (occurrenceSizes[pos] == 0 || occurrenceSizes[neg] == 0) continue;
+            probed++;
+
+            int numPos = solver.probe(pos, posImplied);
+            if (numPos < 0) {
+                found[numFound++] = neg;
+                solver.addClause(neg);
+                continue;
+            }
+            int numNeg = solver.probe(neg, negImplied);
+            if (numNeg < 0) {
+                found[numFound++] = pos;
+                solver.addClause(pos);
+                continue;
+            }
+            // literals implied either way
+            for (int i = 1; i < numPos; i++) {
+                marked[posImplied[i]] = true;
+            }
+            for (int i = 1; i < numNeg; i++) {
+                int lit = negImplied[i];
+                if (marked[lit] && !solver.isAssigned(Lit.var(lit))) {
+                    found[numFound++] = lit;
+                    solver.addClause(lit);
+                }
+            }
+            for (int i = 1; i < numPos; i++) {
+                marked[posImplied[i]] = false;
+            }
+            if (!solver.isOk()) break;
+        }
+
+        for (int i = 0; i < numFound; i++) {
+            assign(found[i]);
+        }
+        if (!solver.isOk()) ok = false;
+        propagate();
+        subsumeQueued();
+        return numFound > 0;
+    }
+
+    /*
+     * One pass of bounded variable elimination, fewest occurrences first.
+     * @return true iff some variable was eliminated
+     */
+    private boolean eliminateVariables() {
+        Integer[] order = new Integer[numVars];
+        final int[] counts = new int[numVars];
+        for (int var = 0; var < numVars; var++) {
+            order[var] = var;
+            counts[var] = liveOccurrences(Lit.make(var, false)) + liveOccurrences(Lit.make(var, true));
+        }
+        Arrays.sort(order, (a, b) -> counts[a] - counts[b]);
+
+        boolean any = false;
+        for (int var : order) {
+            if (!ok) break;
+            if (frozen[var] || eliminated[var] || values[var] != Trail.UNASSIGNED) continue;
+            if (eliminate(var)) {
+                any = true;
+                propagate();
+                subsumeQueued();
+            }
+        }
+        return any;
+    }
+
+    /*
+     * Replace the clauses of var by their resolvents on var, unless there
+     * would be more of them.
+     * @return true iff var was eliminated
+     */
+    private boolean eliminate(int var) {
+        int pos = Lit.make(var, false);
+        int neg = Lit.make(var, true);
+        int numPos = liveOccurrences(pos);
+        int numNeg = liveOccurrences(neg);
+        if (numPos == 0 && numNeg == 0) return false;
+        if (numPos > OCCURRENCE_LIMIT && numNeg > OCCURRENCE_LIMIT) return false;
+        int[] posIds = Arrays.copyOf(occurrences[pos], numPos);
+        int[] negIds = Arrays.copyOf(occurrences[neg], numNeg);
+
+        ArrayList<int[]> resolvents = new ArrayList<int[]>();
+        for (int p : posIds) {
+            for (int q : negIds) {
+                int[] r = resolve(clauses.get(p), clauses.get(q), var);
+                if (r == null) continue;
+                if (resolvents.size() == numPos + numNeg) return false;
+                resolvents.add(r);
+            }
+        }
+
+        eliminated[var] = true;
+        for (int id : posIds) {
+            saveEliminated(clauses.get(id), pos);
+            removeClause(id);
+        }
+        for (int id : negIds) {
+            saveEliminated(clauses.get(id), neg);
+            removeClause(id);
+        }
+        for (int[] r : resolvents) {
+            addClause(r);
+            if (!ok) break;
+        }
+        return true;
+    }
+
+    private void saveEliminated(int[] c, int pivot) {
+        int[] saved = new int[c.length];
+        saved[0] = pivot;
+        int k = 1;
+        for (int lit : c) {
+            if (lit != pivot) saved[k++] = lit;
+        }
+        eliminatedClauses.add(saved);
+    }
+
+    /*
+     * Requires: p and q are sorted, p contains var positively and q
+     * negatively
+     * @return the resolvent of p and q on var, sorted, or null if it is a
+     *         tautology
+     */
+    private static int[] resolve(int[] p, int[] q, int var) {
+        int[] r = new int[p.length + q.length - 2];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < p.length || j < q.length) {
+            int lit;
+            if (j == q.length || (i < p.length && p[i] < q[j])) lit = p[i++];
+            else if (i == p.length || q[j] < p[i]) lit = q[j++];
+            else {
+                lit = p[i++];
+                j++;
+            }
+            if (Lit.var(lit) == var) continue;
+            if (size > 0 && r[size - 1] == Lit.not(lit)) return null;
+            r[size++] = lit;
+        }
+        return Arrays.copyOf(r, size);
+    }
+
+    private void addOccurrence(int lit, int id) {
+        int n = occurrenceSizes[lit];
+        if (n == occurrences[lit].length) occurrences[lit] = Arrays.copyOf(occurrences[lit], n * 2);
+        occurrences[lit][n] = id;
+        occurrenceSizes[lit] = n + 1;
+    }
+
+    /*
+     * Drop the ids of clauses that are removed or no longer contain lit
+     * from the occurrence list of lit.
+     * @return the number of ids left
+     */
+    private int liveOccurrences(int lit) {
+        int[] ids = occurrences[lit];
+        int j = 0;
+        for (int i = 0; i < occurrenceSizes[lit]; i++) {
+            int[] c = clauses.get(ids[i]);
+            if (c != null && Arrays.binarySearch(c, lit) >= 0) ids[j++] = ids[i];
+        }
+        occurrenceSizes[lit] = j;
+        return j;
+    }
+
+    private static long signature(int[] c) {
+        long sig = 0;
+        for (int lit : c) {
+            sig |= 1L << (Lit.var(lit) & 63);
+        }
+        return sig;
+    }
+}
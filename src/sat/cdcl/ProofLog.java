@@ -0,0 +1,23 @@
+package sat.cdcl;
+
+/**
+ * Receives a clausal proof from a CDCLSolver, in the order of the DRAT
+ * format: every clause the solver derives is added once it has been
+ * derived, and clauses the solver drops are deleted. If the solver finds
+ * the input unsatisfiable, the last clause added is the empty clause.
+ *
+ * Every added clause follows from the input and the clauses added before
+ * it by unit propagation alone (it is RUP), so the proof can be checked
+ * without knowing how the solver works.
+ */
+public interface ProofLog {
+    /**
+     * The solver has derived the clause lits[from..from+length).
+     */
+    void add(int[] lits, int from, int length);
+
+    /**
+     * The solver no longer uses the clause lits[from..from+length).
+     */
+    void delete(int[] lits, int from, int length);
+}
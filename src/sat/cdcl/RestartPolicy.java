@@ -0,0 +1,17 @@
+package sat.cdcl;
+
+/**
+ * Decides when a CDCLSolver abandons its current decisions and restarts
+ * from decision level 0. Learnt clauses, variable activities and saved
+ * phases survive a restart, so the search quickly returns to where it was
+ * unless what it has learned since points elsewhere.
+ */
+public interface RestartPolicy {
+    /**
+     * Called after every conflict, once the learnt clause is added.
+     * @param lbd literal block distance (number of distinct decision
+     *            levels) of the learnt clause
+     * @return true iff the solver should restart now
+     */
+    boolean conflict(int lbd);
+}
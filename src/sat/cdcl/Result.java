@@ -0,0 +1,13 @@
+package sat.cdcl;
+
+/**
+ * Outcome of a search.
+ */
+public enum Result {
+    /** A satisfying assignment was found. */
+    SAT,
+    /** The clauses have been shown to be unsatisfiable. */
+    UNSAT,
+    /** The search was interrupted before reaching an answer. */
+    UNKNOWN
+}
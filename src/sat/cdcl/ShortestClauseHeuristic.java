@@ -0,0 +1,66 @@
+package sat.cdcl;
+
+/**
+ * The branching rule of SATSolver's DPLL search: make true the first
+ * unassigned literal of a shortest input clause that is not yet satisfied.
+ * Every decision scans all clauses, so this is kept for comparison rather
+ * than speed. Once every input clause is satisfied, the remaining variables
+ * are set false.
+ */
+public class ShortestClauseHeuristic implements BranchingHeuristic {
+    private CDCLSolver solver;
+
+    @Override
+    public void init(CDCLSolver solver) {
+        this.solver = solver;
+    }
+
+    @Override
+    public void newVars(int numVars) {
+    }
+
+    @Override
+    public void bump(int var) {
+    }
+
+    @Override
+    public void decay() {
+    }
+
+    @Override
+    public void unassigned(int var) {
+    }
+
+    @Override
+    public int pick() {
+        ClauseArena clauses = solver.getClauses();
+        int best = -1;
+        int bestSize = Integer.MAX_VALUE;
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            if (clauses.isLearnt(c)) continue;
+            int unassigned = 0;
+            int first = -1;
+            for (int i = 0; i < clauses.size(c); i++) {
+                int lit = clauses.lit(c, i);
+                if (solver.isTrue(lit)) {
+                    unassigned = 0;
+                    break;
+                }
+                if (!solver.isAssigned(Lit.var(lit))) {
+                    if (unassigned == 0) first = lit;
+                    unassigned++;
+                }
+            }
+            if (unassigned > 0 && unassigned < bestSize) {
+                best = first;
+                bestSize = unassigned;
+            }
+        }
+        if (best >= 0) return best;
+
+        for (int var = 0; var < solver.numVars(); var++) {
+            if (!solver.isAssigned(var)) return Lit.make(var, true);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,213 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+import sat.env.Environment;
+
+/**
+ * The partial assignment built up during search, indexed by variable number.
+ *
+ * Values, decision levels, reasons and trail positions are plain arrays, so
+ * looking up a variable is O(1). Assigned literals are also pushed on a
+ * stack, the trail proper, together with the position where each decision
+ * level starts; backtracking pops the literals above a level, which is O(1)
+ * per undone assignment and allocates nothing.
+ */
+public class Trail {
+    public static final byte UNASSIGNED = 0;
+    public static final byte TRUE = 1;
+    public static final byte FALSE = -1;
+
+    /**
+     * Reason recorded for decisions and other unforced assignments.
+     */
+    public static final int NO_REASON = -1;
+
+    private byte[] values;
+    private int[] levels;
+    private int[] reasons;
+    private int[] positions;
+    private int[] lits;
+    private int size;
+    private int[] levelStarts = new int[16];
+    private int decisionLevel;
+
+    /*
+     * Rep invariant:
+     *     values, levels, reasons and positions have one entry per variable
+     *     lits[0..size) holds each assigned literal exactly once, and
+     *     values[v] != UNASSIGNED iff v is the variable of one of them,
+     *     which is then lits[positions[v]]
+     *     levelStarts[0..decisionLevel) is non-decreasing and <= size
+     */
+
+    /**
+     * Create an empty assignment over variables 0..numVars-1.
+     */
+    public Trail(int numVars) {
+        values = new byte[numVars];
+        levels = new int[numVars];
+        reasons = new int[numVars];
+        positions = new int[numVars];
+        lits = new int[numVars];
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int numVars() {
+        return values.length;
+    }
+
+    /**
+     * Make sure variables 0..numVars-1 exist; new variables are unassigned.
+     */
+    public void ensureVars(int numVars) {
+        if (numVars <= values.length) return;
+        values = Arrays.copyOf(values, numVars);
+        levels = Arrays.copyOf(levels, numVars);
+        reasons = Arrays.copyOf(reasons, numVars);
+        positions = Arrays.copyOf(positions, numVars);
+        lits = Arrays.copyOf(lits, numVars);
+    }
+
+    /**
+     * @return TRUE, FALSE or UNASSIGNED, the value of lit
+     */
+    public byte valueOf(int lit) {
+        byte value = values[Lit.var(lit)];
+        return Lit.isNegative(lit) ? (byte) -value : value;
+    }
+
+    /**
+     * @return true iff var has a value
+     */
+    public boolean isAssigned(int var) {
+        return values[var] != UNASSIGNED;
+    }
+
+    /**
+     * @return decision level at which var was assigned
+     * Requires: var is assigned
+     */
+    public int level(int var) {
+        return levels[var];
+    }
+
+    /**
+     * @return reason recorded when var was assigned
+     * Requires: var is assigned
+     */
+    public int reason(int var) {
+        return reasons[var];
+    }
+
+    /**
+     * @return position of var on the trail, so that of two assigned
+     *         variables the one assigned first has the lower position
+     * Requires: var is assigned
+     */
+    public int position(int var) {
+        return positions[var];
+    }
+
+    /**
+     * Replace the reason recorded for var, for instance after the clause
+     * it refers to has moved.
+     * Requires: var is assigned
+     */
+    public void setReason(int var, int reason) {
+        reasons[var] = reason;
+    }
+
+    /**
+     * @return current decision level, 0 before any decision
+     */
+    public int decisionLevel() {
+        return decisionLevel;
+    }
+
+    /**
+     * Open a new decision level; following assignments belong to it.
+     */
+    public void newDecisionLevel() {
+        if (decisionLevel == levelStarts.length) {
+            levelStarts = Arrays.copyOf(levelStarts, decisionLevel * 2);
+        }
+        levelStarts[decisionLevel++] = size;
+    }
+
+    /**
+     * Make lit true at the current decision level.
+     * Requires: the variable of lit is unassigned
+     */
+    public void assign(int lit, int reason) {
+        int var = Lit.var(lit);
+        values[var] = Lit.isNegative(lit) ? FALSE : TRUE;
+        levels[var] = decisionLevel;
+        reasons[var] = reason;
+        positions[var] = size;
+        lits[size++] = lit;
+    }
+
+    /**
+     * @return number of assigned literals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the i-th assigned literal, in order of assignment
+     */
+    public int get(int i) {
+        return lits[i];
+    }
+
+    /**
+     * @return position on the trail of the first literal of the given level
+     * Requires: 0 < level <= decisionLevel()
+     */
+    public int levelStart(int level) {
+        return levelStarts[level - 1];
+    }
+
+    /**
+     * Unassign every literal above the given decision level.
+     */
+    public void cancelUntil(int level) {
+        if (decisionLevel <= level) return;
+        int limit = levelStarts[level];
+        for (int i = size - 1; i >= limit; i--) {
+            values[Lit.var(lits[i])] = UNASSIGNED;
+        }
+        size = limit;
+        decisionLevel = level;
+    }
+
+    /**
+     * @return model[v] true iff variable v is assigned TRUE
+     */
+    public boolean[] model() {
+        boolean[] model = new boolean[values.length];
+        for (int var = 0; var < values.length; var++) {
+            model[var] = values[var] == TRUE;
+        }
+        return model;
+    }
+
+    /**
+     * @return an environment binding the variables of formula that are
+     *         assigned here to their values; unassigned variables are left
+     *         unbound
+     */
+    public Environment toEnvironment(IntFormula formula) {
+        Environment env = new Environment();
+        for (int i = 0; i < size; i++) {
+            int lit = lits[i];
+            if (Lit.isNegative(lit)) env = env.putFalse(formula.getVariable(Lit.var(lit)));
+            else env = env.putTrue(formula.getVariable(Lit.var(lit)));
+        }
+        return env;
+    }
+}
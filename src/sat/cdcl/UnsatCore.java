@@ -0,0 +1,111 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * Unsatisfiable cores: subsets of the clauses of an unsatisfiable formula,
+ * or of the assumptions of an unsatisfiable search, that are unsatisfiable
+ * on their own.
+ *
+ * Clause cores are found with selector variables: clause i of the formula
+ * is added to a CDCLSolver as (clause i or not s_i) and solved assuming
+ * every s_i, so the failed assumptions name the clauses used. A core is
+ * minimized by deletion: each member in turn is left out, and if the rest
+ * is still unsatisfiable, the core shrinks to the new failed assumptions;
+ * otherwise the member is needed. The result is a minimal core, one from
+ * which no single member can be removed.
+ *
+ * The constraints of the formula are hard: they are added without
+ * selectors, so every core holds together with them, and the core of a
+ * formula whose constraints alone are unsatisfiable is empty.
+ */
+public class UnsatCore {
+
+    private UnsatCore() {
+    }
+
+    /**
+     * Find an unsatisfiable core of formula.
+     * Requires: formula is non-null
+     * @param minimize whether to shrink the core to a minimal one, which
+     *            costs one search per member of the core
+     * @return the indices, in increasing order, of the clauses of the core
+     *         in the order of formula.getClauses(), which are
+     *         unsatisfiable together with the constraints of formula; or
+     *         null if formula is satisfiable
+     */
+    public static int[] find(IntFormula formula, boolean minimize) {
+        int n = formula.numVars();
+        ClauseArena input = formula.getClauses();
+        int m = input.count();
+        CDCLSolver solver = new CDCLSolver(new IntFormula());
+        solver.ensureVars(n + m);
+
+        int[] lits = new int[16];
+        int[] selectors = new int[m];
+        int i = 0;
+        for (int c = 0; c < input.end(); c = input.next(c), i++) {
+            int size = input.size(c);
+            if (size + 1 > lits.length) lits = new int[size + 1];
+            for (int k = 0; k < size; k++) {
+                lits[k] = input.lit(c, k);
+            }
+            selectors[i] = Lit.make(n + i, false);
+            lits[size] = Lit.not(selectors[i]);
+            solver.addClause(lits, 0, size + 1);
+        }
+        for (PbConstraint c : formula.getConstraints()) {
+            solver.addConstraint(c);
+        }
+
+        if (solver.search(selectors) != Result.UNSAT) return null;
+        int[] core = solver.failedAssumptions();
+        if (minimize) core = minimize(solver, core);
+
+        int[] indices = new int[core.length];
+        for (int k = 0; k < core.length; k++) {
+            indices[k] = Lit.var(core[k]) - n;
+        }
+        Arrays.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Shrink a set of assumptions that is unsatisfiable together with the
+     * clauses of solver to a minimal such set. A search that is interrupted
+     * keeps the assumption it was testing.
+     * Requires: the clauses of solver and assumptions are unsatisfiable
+     * @return the minimal subset of assumptions, in no particular order
+     */
+    public static int[] minimize(CDCLSolver solver, int[] assumptions) {
+        // core[0..needed) is known to be needed, core[needed..size) unknown
+        int[] core = assumptions.clone();
+        int needed = 0;
+        int size = core.length;
+        boolean[] inFailed = new boolean[2 * solver.numVars()];
+        while (needed < size) {
+            int candidate = core[size - 1];
+            Result result = solver.search(Arrays.copyOf(core, size - 1));
+            if (result == Result.UNSAT) {
+                // keep the unknown members the new core still uses
+                int[] failed = solver.failedAssumptions();
+                for (int lit : failed) {
+                    inFailed[lit] = true;
+                }
+                int kept = needed;
+                for (int k = needed; k < size - 1; k++) {
+                    if (inFailed[core[k]]) core[kept++] = core[k];
+                }
+                for (int lit : failed) {
+                    inFailed[lit] = false;
+                }
+                size = kept;
+            } else {
+                // move the candidate into the needed prefix
+                core[size - 1] = core[needed];
+                core[needed++] = candidate;
+            }
+        }
+        return Arrays.copyOf(core, size);
+    }
+}
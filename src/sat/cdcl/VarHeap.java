@@ -0,0 +1,125 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * A binary max-heap of variables ordered by an external activity array,
+ * indexed so that membership tests are O(1) and a variable whose activity
+ * has increased can be moved up in O(log n).
+ */
+public class VarHeap {
+    private double[] activity;
+    private int[] heap;
+    private int[] indices;
+    private int size;
+
+    /*
+     * Rep invariant:
+     *     heap[0..size) holds distinct variables
+     *     indices[heap[i]] == i for i < size, and indices[v] == -1 for every
+     *     variable v not in the heap
+     *     activity[heap[i]] <= activity[heap[(i-1)/2]] for 0 < i < size
+     */
+
+    /**
+     * Create an empty heap over variables 0..activity.length-1. The heap
+     * reads activity directly, so activities must only be changed through
+     * increase or by scaling all of them by the same positive factor.
+     */
+    public VarHeap(double[] activity) {
+        this.activity = activity;
+        heap = new int[activity.length];
+        indices = new int[activity.length];
+        Arrays.fill(indices, -1);
+    }
+
+    /**
+     * Switch to a longer activity array, for variables 0..activity.length-1.
+     * New variables are not in the heap.
+     * Requires: activity starts with the same values as the current array
+     */
+    public void grow(double[] activity) {
+        int old = indices.length;
+        this.activity = activity;
+        heap = Arrays.copyOf(heap, activity.length);
+        indices = Arrays.copyOf(indices, activity.length);
+        Arrays.fill(indices, old, indices.length, -1);
+    }
+
+    /**
+     * @return true iff var is in the heap
+     */
+    public boolean contains(int var) {
+        return indices[var] >= 0;
+    }
+
+    /**
+     * @return true iff the heap holds no variables
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add var to the heap.
+     * Requires: var is not in the heap
+     */
+    public void insert(int var) {
+        indices[var] = size;
+        heap[size++] = var;
+        percolateUp(size - 1);
+    }
+
+    /**
+     * Remove and return a variable of highest activity.
+     * Requires: the heap is non-empty
+     */
+    public int removeMax() {
+        int max = heap[0];
+        int last = heap[--size];
+        indices[max] = -1;
+        if (size > 0) {
+            heap[0] = last;
+            indices[last] = 0;
+            percolateDown(0);
+        }
+        return max;
+    }
+
+    /**
+     * Restore heap order after the activity of var has increased.
+     */
+    public void increase(int var) {
+        if (contains(var)) percolateUp(indices[var]);
+    }
+
+    private void percolateUp(int i) {
+        int var = heap[i];
+        double a = activity[var];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= a) break;
+            heap[i] = heap[parent];
+            indices[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = var;
+        indices[var] = i;
+    }
+
+    private void percolateDown(int i) {
+        int var = heap[i];
+        double a = activity[var];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) child++;
+            if (activity[heap[child]] <= a) break;
+            heap[i] = heap[child];
+            indices[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = var;
+        indices[var] = i;
+    }
+}
@@ -0,0 +1,104 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Exponential VSIDS: every variable in a conflict has its activity bumped by
+ * an increment that grows geometrically after each conflict, so that recent
+ * conflicts weigh more than old ones. Unassigned variables are kept in a
+ * VarHeap, so picking the most active one is O(log n). The chosen variable
+ * is given the solver's phase for it.
+ */
+public class VsidsHeuristic implements BranchingHeuristic {
+    private static final double RESCALE_LIMIT = 1e100;
+
+    private final double decay;
+    private final Random random;
+    private double increment = 1.0;
+    private double[] activity;
+    private VarHeap heap;
+    private CDCLSolver solver;
+
+    /**
+     * Create the heuristic with the usual decay factor of 0.95.
+     */
+    public VsidsHeuristic() {
+        this(0.95);
+    }
+
+    /**
+     * Requires: 0 < decay <= 1
+     * @param decay factor by which older activity bumps lose weight
+     *            after every conflict
+     */
+    public VsidsHeuristic(double decay) {
+        this(decay, null);
+    }
+
+    /**
+     * Requires: 0 < decay <= 1
+     * @param decay factor by which older activity bumps lose weight
+     *            after every conflict
+     * @param random if non-null, used to give every variable a tiny random
+     *            initial activity, so that differently seeded solvers break
+     *            ties between untouched variables differently
+     */
+    public VsidsHeuristic(double decay, Random random) {
+        this.decay = decay;
+        this.random = random;
+    }
+
+    @Override
+    public void init(CDCLSolver solver) {
+        this.solver = solver;
+        activity = new double[solver.numVars()];
+        heap = new VarHeap(activity);
+        for (int var = 0; var < activity.length; var++) {
+            if (random != null) activity[var] = random.nextDouble() * 1e-5;
+            heap.insert(var);
+        }
+    }
+
+    @Override
+    public void newVars(int numVars) {
+        int old = activity.length;
+        activity = Arrays.copyOf(activity, numVars);
+        heap.grow(activity);
+        for (int var = old; var < numVars; var++) {
+            if (random != null) activity[var] = random.nextDouble() * 1e-5;
+            heap.insert(var);
+        }
+    }
+
+    @Override
+    public void bump(int var) {
+        activity[var] += increment;
+        if (activity[var] > RESCALE_LIMIT) {
+            for (int v = 0; v < activity.length; v++) {
+                activity[v] /= RESCALE_LIMIT;
+            }
+            increment /= RESCALE_LIMIT;
+        }
+        heap.increase(var);
+    }
+
+    @Override
+    public void decay() {
+        increment /= decay;
+    }
+
+    @Override
+    public void unassigned(int var) {
+        if (!heap.contains(var)) heap.insert(var);
+    }
+
+    @Override
+    public int pick() {
+        while (!heap.isEmpty()) {
+            int var = heap.removeMax();
+            if (!solver.isAssigned(var)) return solver.phaseLiteral(var);
+        }
+        return -1;
+    }
+}
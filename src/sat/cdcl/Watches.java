@@ -0,0 +1,94 @@
+package sat.cdcl;
+
+import java.util.Arrays;
+
+/**
+ * Watch lists for two-watched-literal unit propagation.
+ *
+ * Every clause of two or more literals is watched by its first two literals.
+ * The list of a literal holds (clause, blocker) pairs, where the blocker is
+ * some other literal of the clause; if the blocker is already true, the
+ * clause is satisfied and need not be visited at all. Lists are plain int
+ * arrays that grow geometrically, so propagation does not allocate once the
+ * lists have reached their working size.
+ */
+public class Watches {
+    private int[][] lists;
+    private int[] sizes;
+
+    /*
+     * Rep invariant:
+     *     lists.length == sizes.length
+     *     0 <= sizes[l] <= lists[l].length and sizes[l] is even
+     *     lists[l][2i] is a clause index and lists[l][2i+1] its blocker
+     */
+
+    /**
+     * Create empty watch lists for literals 0..numLiterals-1.
+     */
+    public Watches(int numLiterals) {
+        lists = new int[numLiterals][];
+        sizes = new int[numLiterals];
+        for (int l = 0; l < numLiterals; l++) {
+            lists[l] = new int[4];
+        }
+    }
+
+    /**
+     * Make sure literals 0..numLiterals-1 have (possibly empty) watch lists.
+     */
+    public void ensureLiterals(int numLiterals) {
+        int old = lists.length;
+        if (numLiterals <= old) return;
+        lists = Arrays.copyOf(lists, numLiterals);
+        sizes = Arrays.copyOf(sizes, numLiterals);
+        for (int l = old; l < numLiterals; l++) {
+            lists[l] = new int[4];
+        }
+    }
+
+    /**
+     * Empty every watch list, keeping the arrays for reuse.
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+    }
+
+    /**
+     * Add clause to the watch list of lit, with the given blocker literal.
+     */
+    public void watch(int lit, int clause, int blocker) {
+        int size = sizes[lit];
+        if (size == lists[lit].length) {
+            lists[lit] = Arrays.copyOf(lists[lit], size * 2);
+        }
+        lists[lit][size] = clause;
+        lists[lit][size + 1] = blocker;
+        sizes[lit] = size + 2;
+    }
+
+    /**
+     * The backing array of the watch list of lit. Only the first size(lit)
+     * entries are meaningful, as (clause, blocker) pairs. The array may be
+     * replaced by a later call to watch(lit, ...).
+     */
+    public int[] list(int lit) {
+        return lists[lit];
+    }
+
+    /**
+     * @return number of meaningful entries (twice the number of watches) in
+     *         the watch list of lit
+     */
+    public int size(int lit) {
+        return sizes[lit];
+    }
+
+    /**
+     * Truncate the watch list of lit to its first size entries.
+     * Requires: size is even and no larger than size(lit)
+     */
+    public void shrink(int lit, int size) {
+        sizes[lit] = size;
+    }
+}
@@ -0,0 +1,302 @@
+package sat.count;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.Result;
+
+/**
+ * Estimates the number of solutions of a formula by hashing, in the style
+ * of ApproxMC.
+ *
+ * Random XOR constraints over the variables of the formula each cut the
+ * solutions roughly in half. The counter looks for the smallest number m
+ * of such constraints that leaves fewer than a threshold of solutions,
+ * counts those by enumeration, and multiplies by 2^m. With XORs of half
+ * the variables, the median of several such rounds is, with probability
+ * at least 1 - delta, within a factor 1 + epsilon of the true count; by
+ * default XORs are shorter, which CDCL finds far easier (see setDensity).
+ *
+ * Each round uses one incremental CDCLSolver. The XORs of a round are
+ * nested (the first m of them are the hash for m) and encoded in CNF with
+ * chains of fresh variables, and each is enabled by assuming its selector
+ * literal, so the same solver answers every m tried while searching for
+ * the right one, starting from the m of the previous round. Blocking
+ * clauses are guarded by a selector of their own, which is switched off
+ * for good when the count for that m is done.
+ */
+public class ApproximateCounter {
+    // variables per link of the CNF chain encoding a long XOR
+    private static final int XOR_CHUNK = 3;
+    // bound on the chance that one round's estimate is off by more than
+    // the tolerance (Chakraborty, Meel and Vardi, IJCAI 2016)
+    private static final double ROUND_FAILURE = 0.36;
+    // expected number of variables of an XOR by default
+    private static final double XOR_LENGTH = 6;
+
+    private final IntFormula formula;
+    private final Random random;
+    private double density;
+    private long solverCalls;
+
+    /**
+     * Create a counter for the given formula, which is not modified.
+     * Requires: formula and random are non-null
+     * @throws IllegalArgumentException if formula has constraints, which
+     *         the counter cannot see
+     */
+    public ApproximateCounter(IntFormula formula, Random random) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("cannot count the solutions of pseudo-Boolean constraints");
+        }
+        this.formula = formula;
+        this.random = random;
+        density = Math.min(0.5, XOR_LENGTH / Math.max(1, formula.numVars()));
+    }
+
+    /**
+     * Set the probability that each variable is in each XOR. The default
+     * keeps XORs to about 6 variables: CDCL handles long XORs poorly, since
+     * their CNF encoding is hard for resolution, while short XORs are
+     * known to give good estimates in practice. With density 1/2 the
+     * estimate has the guarantee of count, at a cost that grows quickly
+     * with the number of variables.
+     * Requires: 0 < density <= 1/2
+     */
+    public void setDensity(double density) {
+        this.density = density;
+    }
+
+    /**
+     * Requires: epsilon > 0 and 0 < delta < 1
+     * @return an estimate of the number of assignments to the variables of
+     *         the formula that satisfy it; with XORs of density 1/2, it is
+     *         within a factor 1 + epsilon of it with probability at least
+     *         1 - delta
+     */
+    public BigInteger count(double epsilon, double delta) {
+        int threshold = (int) Math.ceil(1 + 9.84 * (1 + epsilon / (1 + epsilon))
+                * (1 + 1 / epsilon) * (1 + 1 / epsilon));
+        int rounds = rounds(delta);
+        int n = formula.numVars();
+
+        // few enough solutions to count them all
+        Round exact = new Round(0);
+        int all = exact.countUpTo(0, threshold);
+        if (all < 0) return BigInteger.ZERO;
+        if (all < threshold) return BigInteger.valueOf(all);
+
+        BigInteger[] estimates = new BigInteger[rounds];
+        // the m of one round is a good first guess for the next
+        int guess = 1;
+        for (int r = 0; r < rounds; r++) {
+            Round round = new Round(n);
+            int[] counts = new int[n + 1];
+            Arrays.fill(counts, -1);
+            counts[0] = threshold;
+            int m = smallestBelow(round, counts, guess, threshold);
+            estimates[r] = BigInteger.valueOf(counts[m]).shiftLeft(m);
+            guess = m;
+        }
+        Arrays.sort(estimates);
+        return estimates[rounds / 2];
+    }
+
+    /*
+     * @return the least odd number of rounds whose median is wrong with
+     *         probability at most delta, when each round is wrong with
+     *         probability at most ROUND_FAILURE: the chance that more than
+     *         half of them are wrong, from the binomial distribution
+     */
+    private static int rounds(double delta) {
+        for (int t = 1; ; t += 2) {
+            double tail = 0;
+            double term = Math.pow(1 - ROUND_FAILURE, t);
+            // term is the chance that exactly k of t rounds are wrong
+            for (int k = 0; k <= t; k++) {
+                if (k > t / 2) tail += term;
+                term *= (double) (t - k) / (k + 1) * ROUND_FAILURE / (1 - ROUND_FAILURE);
+            }
+            if (tail <= delta) return t;
+        }
+    }
+
+    /*
+     * Gallop from guess to bracket the smallest m with fewer than
+     * threshold solutions under m XORs, then binary search, recording
+     * counts[m] for every m tried. Counts only fall as m grows, and the
+     * hardest searches are those with many XORs, so larger m are tried
+     * only as far as needed.
+     * Requires: counts[0] >= threshold, 0 < guess <= counts.length - 1
+     * @return that m, or the largest m if there is none
+     */
+    private int smallestBelow(Round round, int[] counts, int guess, int threshold) {
+        int max = counts.length - 1;
+        // counts[lo] >= threshold, and counts[hi] < threshold unless hi == max
+        int lo;
+        int hi;
+        if (round.count(counts, guess, threshold) < threshold) {
+            hi = guess;
+            int step = 1;
+            lo = Math.max(0, hi - step);
+            while (lo > 0 && round.count(counts, lo, threshold) < threshold) {
+                hi = lo;
+                step *= 2;
+                lo = Math.max(0, hi - step);
+            }
+        } else {
+            lo = guess;
+            int step = 1;
+            hi = Math.min(max, lo + step);
+            while (hi < max && round.count(counts, hi, threshold) >= threshold) {
+                lo = hi;
+                step *= 2;
+                hi = Math.min(max, lo + step);
+            }
+        }
+        while (hi - lo > 1) {
+            int m = (lo + hi) >>> 1;
+            if (round.count(counts, m, threshold) < threshold) hi = m;
+            else lo = m;
+        }
+        round.count(counts, hi, threshold);
+        return hi;
+    }
+
+    /**
+     * @return number of searches run by the counts so far
+     */
+    public long numSolverCalls() {
+        return solverCalls;
+    }
+
+    /*
+     * One round: the formula, a nested family of random XORs, and the
+     * solver that counts solutions under the first m of them.
+     */
+    private class Round {
+        final CDCLSolver solver;
+        final int numVars;
+        // selector literal of each XOR, assumed to enable it
+        final int[] selectors;
+
+        Round(int numXors) {
+            // a copy, so that the fresh variables stay out of formula
+            IntFormula f = new IntFormula(formula);
+            ClauseArena clauses = formula.getClauses();
+            for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+                f.addClause(clauses.toArray(c));
+            }
+            solver = new CDCLSolver(f);
+            numVars = formula.numVars();
+            selectors = new int[numXors];
+            for (int i = 0; i < numXors; i++) {
+                selectors[i] = Lit.make(newVar(), false);
+                addXor(selectors[i]);
+            }
+        }
+
+        private int newVar() {
+            int var = solver.numVars();
+            solver.ensureVars(var + 1);
+            return var;
+        }
+
+        /*
+         * Add a random XOR over the variables of the formula, each taken
+         * with probability density, and with a random parity, that holds
+         * when selector is true.
+         */
+        private void addXor(int selector) {
+            int[] vars = new int[numVars + 1];
+            int size = 0;
+            for (int var = 0; var < numVars; var++) {
+                if (random.nextDouble() < density) vars[size++] = var;
+            }
+            boolean parity = random.nextBoolean();
+            if (size == 0) {
+                // the empty XOR is false with parity 1
+                if (parity) solver.addClause(Lit.not(selector));
+                return;
+            }
+            // x1 ^ .. ^ xk = parity as links x1 ^ x2 ^ x3 = t1,
+            // t1 ^ x4 ^ x5 = t2, ..., each of at most XOR_CHUNK + 1 variables
+            int at = 0;
+            int carry = -1;
+            while (true) {
+                int[] link = new int[XOR_CHUNK + 1];
+                int k = 0;
+                if (carry >= 0) link[k++] = carry;
+                while (k < XOR_CHUNK && at < size) {
+                    link[k++] = vars[at++];
+                }
+                if (at == size) {
+                    addXorClauses(selector, link, k, parity);
+                    return;
+                }
+                carry = newVar();
+                link[k++] = carry;
+                addXorClauses(selector, link, k, false);
+            }
+        }
+
+        /*
+         * Add the clauses of vars[0] ^ .. ^ vars[k-1] = parity, each with
+         * the negation of selector: one clause per assignment of the wrong
+         * parity, ruling it out.
+         */
+        private void addXorClauses(int selector, int[] vars, int k, boolean parity) {
+            int[] clause = new int[k + 1];
+            for (int bits = 0; bits < (1 << k); bits++) {
+                if ((Integer.bitCount(bits) % 2 == 1) == parity) continue;
+                for (int i = 0; i < k; i++) {
+                    // bit i set: the clause holds when vars[i] is false
+                    clause[i] = Lit.make(vars[i], (bits >> i & 1) != 0);
+                }
+                clause[k] = Lit.not(selector);
+                solver.addClause(clause.clone());
+            }
+        }
+
+        /*
+         * @return counts[m], computing it with countUpTo if it is not known
+         */
+        int count(int[] counts, int m, int limit) {
+            if (counts[m] < 0) counts[m] = countUpTo(m, limit);
+            return counts[m];
+        }
+
+        /*
+         * @return the number of solutions of the formula over its own
+         *         variables under the first m XORs, or limit if there are
+         *         at least that many, or -1 if the formula has none at all
+         */
+        int countUpTo(int m, int limit) {
+            int guard = Lit.make(newVar(), false);
+            int[] assumptions = Arrays.copyOf(selectors, m + 1);
+            assumptions[m] = guard;
+            int count = 0;
+            while (count < limit) {
+                solverCalls++;
+                if (solver.search(assumptions) != Result.SAT) break;
+                count++;
+                boolean[] model = solver.model();
+                int[] blocking = new int[numVars + 1];
+                for (int var = 0; var < numVars; var++) {
+                    blocking[var] = Lit.make(var, model[var]);
+                }
+                blocking[numVars] = Lit.not(guard);
+                solver.addClause(blocking);
+            }
+            // retire this count's blocking clauses
+            solver.addClause(Lit.not(guard));
+            if (!solver.isOk()) return -1;
+            return count;
+        }
+    }
+}
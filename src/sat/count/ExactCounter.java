@@ -0,0 +1,326 @@
+package sat.count;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+
+/**
+ * Counts the solutions of a formula exactly, by DPLL with component
+ * caching, in the style of sharpSAT.
+ *
+ * Like SATSolver's DPLL search, the counter propagates units and branches
+ * on a variable, but it explores both branches and adds their counts.
+ * Before branching, the clauses left are split into connected components,
+ * groups that share no variable; the count of the whole is the product of
+ * the counts of the components, so independent parts of the formula are
+ * never multiplied out against each other. Each component is cached under
+ * a canonical encoding of its clauses (literals sorted within clauses,
+ * clauses sorted), so a component met again under another partial
+ * assignment is counted only once.
+ *
+ * The recursion is at most as deep as the number of variables.
+ */
+public class ExactCounter {
+    // entries kept in the cache before it is emptied
+    private static final int CACHE_LIMIT = 1 << 20;
+
+    private final IntFormula formula;
+    private final HashMap<Key, BigInteger> cache = new HashMap<Key, BigInteger>();
+    // scratch: union-find parents, branching scores and a mark per variable
+    private final int[] parent;
+    private final double[] score;
+    private final int[] stamp;
+    private int currentStamp;
+    private long hits;
+    private long decisions;
+
+    /*
+     * The clauses of a component in canonical order, as a hash key.
+     */
+    private static final class Key {
+        final int[] encoding;
+        final int hash;
+
+        Key(int[] encoding) {
+            this.encoding = encoding;
+            hash = Arrays.hashCode(encoding);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(encoding, ((Key) o).encoding);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Create a counter for the given formula, which is not modified.
+     * Requires: formula is non-null
+     * @throws IllegalArgumentException if formula has constraints, which
+     *         the counter cannot see
+     */
+    public ExactCounter(IntFormula formula) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("cannot count the solutions of pseudo-Boolean constraints");
+        }
+        this.formula = formula;
+        parent = new int[formula.numVars()];
+        score = new double[formula.numVars()];
+        stamp = new int[formula.numVars()];
+    }
+
+    /**
+     * @return the number of assignments to the variables of the formula
+     *         that satisfy it
+     */
+    public BigInteger count() {
+        ArrayList<int[]> clauses = new ArrayList<int[]>();
+        ClauseArena input = formula.getClauses();
+        for (int c = 0; c < input.end(); c = input.next(c)) {
+            int[] clause = normalize(input.toArray(c));
+            if (clause == null) continue;
+            if (clause.length == 0) return BigInteger.ZERO;
+            clauses.add(clause);
+        }
+        return count(clauses, formula.numVars());
+    }
+
+    /**
+     * @return number of components whose count came from the cache
+     */
+    public long numCacheHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of branching variables chosen
+     */
+    public long numDecisions() {
+        return decisions;
+    }
+
+    /*
+     * @return the literals of clause sorted without repeats, or null if
+     *         the clause is a tautology
+     */
+    private static int[] normalize(int[] clause) {
+        Arrays.sort(clause);
+        int size = 0;
+        for (int lit : clause) {
+            if (size > 0 && clause[size - 1] == lit) continue;
+            // a literal and its negation sort next to each other
+            if (size > 0 && clause[size - 1] == Lit.not(lit)) return null;
+            clause[size++] = lit;
+        }
+        return Arrays.copyOf(clause, size);
+    }
+
+    /*
+     * @return the number of assignments to numVars variables, including
+     *         those of clauses, that satisfy clauses
+     */
+    private BigInteger count(List<int[]> clauses, int numVars) {
+        // unit propagation
+        int assigned = 0;
+        while (true) {
+            int unit = -1;
+            for (int[] c : clauses) {
+                if (c.length == 1) {
+                    unit = c[0];
+                    break;
+                }
+            }
+            if (unit < 0) break;
+            clauses = assign(clauses, unit);
+            if (clauses == null) return BigInteger.ZERO;
+            assigned++;
+        }
+
+        List<List<int[]>> components = components(clauses);
+        int occurring = 0;
+        BigInteger total = BigInteger.ONE;
+        for (List<int[]> component : components) {
+            int vars = numVars(component);
+            occurring += vars;
+            BigInteger n = countComponent(component, vars);
+            if (n.signum() == 0) return n;
+            total = total.multiply(n);
+        }
+        // the variables left in no clause are free
+        return total.shiftLeft(numVars - assigned - occurring);
+    }
+
+    /*
+     * @return the number of solutions of a connected component over vars
+     *         variables, from the cache if possible
+     */
+    private BigInteger countComponent(List<int[]> component, int vars) {
+        Key key = new Key(encode(component));
+        BigInteger n = cache.get(key);
+        if (n != null) {
+            hits++;
+            return n;
+        }
+
+        int var = branchVariable(component);
+        decisions++;
+        int pos = Lit.make(var, false);
+        BigInteger count = BigInteger.ZERO;
+        for (int lit : new int[] { pos, Lit.not(pos) }) {
+            List<int[]> reduced = assign(component, lit);
+            if (reduced != null) count = count.add(count(reduced, vars - 1));
+        }
+
+        if (cache.size() >= CACHE_LIMIT) cache.clear();
+        cache.put(key, count);
+        return count;
+    }
+
+    /*
+     * @return clauses with lit true: without the clauses it satisfies and
+     *         without its negation in the others, or null if that empties
+     *         a clause
+     */
+    private static List<int[]> assign(List<int[]> clauses, int lit) {
+        int notLit = Lit.not(lit);
+        ArrayList<int[]> out = new ArrayList<int[]>(clauses.size());
+        for (int[] c : clauses) {
+            int at = -1;
+            boolean satisfied = false;
+            for (int i = 0; i < c.length; i++) {
+                if (c[i] == lit) satisfied = true;
+                else if (c[i] == notLit) at = i;
+            }
+            if (satisfied) continue;
+            if (at < 0) {
+                out.add(c);
+                continue;
+            }
+            if (c.length == 1) return null;
+            // removing a literal keeps the clause sorted
+            int[] reduced = new int[c.length - 1];
+            System.arraycopy(c, 0, reduced, 0, at);
+            System.arraycopy(c, at + 1, reduced, at, c.length - at - 1);
+            out.add(reduced);
+        }
+        return out;
+    }
+
+    /*
+     * Split clauses into groups connected by shared variables.
+     */
+    private List<List<int[]>> components(List<int[]> clauses) {
+        currentStamp++;
+        for (int[] c : clauses) {
+            for (int lit : c) {
+                int var = Lit.var(lit);
+                if (stamp[var] != currentStamp) {
+                    stamp[var] = currentStamp;
+                    parent[var] = var;
+                }
+            }
+            for (int i = 1; i < c.length; i++) {
+                int a = find(Lit.var(c[0]));
+                int b = find(Lit.var(c[i]));
+                if (a != b) parent[a] = b;
+            }
+        }
+
+        HashMap<Integer, List<int[]>> byRoot = new HashMap<Integer, List<int[]>>();
+        List<List<int[]>> out = new ArrayList<List<int[]>>();
+        for (int[] c : clauses) {
+            int root = find(Lit.var(c[0]));
+            List<int[]> component = byRoot.get(root);
+            if (component == null) {
+                component = new ArrayList<int[]>();
+                byRoot.put(root, component);
+                out.add(component);
+            }
+            component.add(c);
+        }
+        return out;
+    }
+
+    private int find(int var) {
+        while (parent[var] != var) {
+            // path halving
+            parent[var] = parent[parent[var]];
+            var = parent[var];
+        }
+        return var;
+    }
+
+    /*
+     * @return number of distinct variables in clauses
+     */
+    private int numVars(List<int[]> clauses) {
+        currentStamp++;
+        int n = 0;
+        for (int[] c : clauses) {
+            for (int lit : c) {
+                if (stamp[Lit.var(lit)] != currentStamp) {
+                    stamp[Lit.var(lit)] = currentStamp;
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /*
+     * @return the variable occurring in the most clauses, shorter clauses
+     *         counting more
+     */
+    private int branchVariable(List<int[]> clauses) {
+        currentStamp++;
+        int best = -1;
+        double bestScore = -1;
+        for (int[] c : clauses) {
+            double weight = 1.0 / c.length;
+            for (int lit : c) {
+                int var = Lit.var(lit);
+                if (stamp[var] != currentStamp) {
+                    stamp[var] = currentStamp;
+                    score[var] = 0;
+                }
+                score[var] += weight;
+                if (score[var] > bestScore) {
+                    bestScore = score[var];
+                    best = var;
+                }
+            }
+        }
+        return best;
+    }
+
+    /*
+     * @return the clauses, each sorted, in lexicographic order and
+     *         concatenated, each preceded by its length
+     */
+    private static int[] encode(List<int[]> clauses) {
+        int[][] sorted = clauses.toArray(new int[clauses.size()][]);
+        Arrays.sort(sorted, Arrays::compare);
+        int size = 0;
+        for (int[] c : sorted) {
+            size += c.length + 1;
+        }
+        int[] out = new int[size];
+        int at = 0;
+        for (int[] c : sorted) {
+            out[at++] = c.length;
+            System.arraycopy(c, 0, out, at, c.length);
+            at += c.length;
+        }
+        return out;
+    }
+}
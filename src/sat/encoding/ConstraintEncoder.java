@@ -0,0 +1,101 @@
+package sat.encoding;
+
+import sat.cdcl.ClauseArena;
+import sat.cdcl.ClauseSink;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.PbConstraint;
+
+/**
+ * Translates pseudo-Boolean constraints into clauses, for solvers and
+ * tools that take plain CNF, and for export.
+ *
+ * A constraint w_1 l_1 + ... + w_n l_n >= bound is first rewritten over the
+ * negated literals as at most total - bound of weight true, with each
+ * weight cut down to the bound, since no literal can count for more than
+ * that; then a sequential counter or a totalizer over the negated
+ * literals rules out larger sums.
+ */
+public class ConstraintEncoder {
+    /**
+     * How to encode a constraint.
+     */
+    public enum Method {
+        /**
+         * SequentialCounter, for any weights.
+         */
+        SEQUENTIAL_COUNTER,
+
+        /**
+         * Totalizer for cardinality constraints; constraints with other
+         * weights fall back to a sequential counter.
+         */
+        TOTALIZER
+    }
+
+    /**
+     * Add clauses that hold iff c does, for some values of fresh variables
+     * numbered from firstVar, to out.
+     * Requires: c mentions no variable >= firstVar
+     * @return the lowest variable not used by the clauses
+     */
+    public static int encode(PbConstraint c, int firstVar, ClauseSink out, Method method) {
+        int n = c.size();
+        long bound = c.bound();
+        if (bound <= 0) return firstVar;
+
+        int[] negated = new int[n];
+        long[] weights = new long[n];
+        long total = 0;
+        boolean cardinality = true;
+        for (int i = 0; i < n; i++) {
+            negated[i] = Lit.not(c.lit(i));
+            weights[i] = Math.min(c.weight(i), bound);
+            total += weights[i];
+            cardinality &= weights[i] == 1;
+        }
+        long k = total - bound;
+
+        if (k < 0) {
+            out.addClause(new int[0], 0, 0);
+            return firstVar;
+        }
+        if (method == Method.TOTALIZER && cardinality) {
+            Totalizer totalizer = new Totalizer(negated, firstVar, out, false);
+            out.addClause(new int[] { Lit.not(totalizer.atLeast((int) k + 1)) }, 0, 1);
+            return totalizer.nextVar();
+        }
+        return new SequentialCounter(negated, weights, k, firstVar, out).nextVar();
+    }
+
+    /**
+     * @return a formula over the variables of formula, with the same
+     *         numbers and names, and fresh variables after them: its clauses
+     *         are those of formula plus the encoding of each of its
+     *         constraints, and it has no constraints. Its solutions,
+     *         restricted to the variables of formula, are the solutions of
+     *         formula.
+     */
+    public static IntFormula toCnf(IntFormula formula, Method method) {
+        IntFormula out = new IntFormula(formula);
+        ClauseArena clauses = formula.getClauses();
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            out.addClause(clauses.toArray(c));
+        }
+        int next = formula.numVars();
+        for (PbConstraint c : formula.getConstraints()) {
+            next = encode(c, next, out, method);
+        }
+        out.ensureVars(next);
+        return out;
+    }
+
+    /**
+     * @return formula itself if it has no constraints, otherwise
+     *         toCnf(formula, Method.TOTALIZER)
+     */
+    public static IntFormula toCnf(IntFormula formula) {
+        if (formula.getConstraints().isEmpty()) return formula;
+        return toCnf(formula, Method.TOTALIZER);
+    }
+}
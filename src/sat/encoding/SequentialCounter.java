@@ -0,0 +1,93 @@
+package sat.encoding;
+
+import sat.cdcl.ClauseSink;
+import sat.cdcl.Lit;
+
+/**
+ * A sequential counter (Sinz, 2005), with weights as in Hoelldobler and
+ * Nguyen (2013): clauses that allow weighted input literals to add up to
+ * at most k.
+ *
+ * After input i, a register of k fresh variables holds the sum of the
+ * inputs so far in unary, register variable j meaning "the weights of the
+ * true inputs up to i add up to at least j". Each register is implied by
+ * the one before and the input, and a true input whose weight would take
+ * the sum above k is ruled out. Only the upward direction is encoded,
+ * which is enough to forbid every assignment over k and to propagate
+ * like the constraint does.
+ *
+ * n inputs take (n - 1) k fresh variables and O(nk) clauses, so this suits
+ * cardinality constraints and small weights; Totalizer is more compact for
+ * cardinality constraints with large k.
+ */
+public class SequentialCounter {
+    private int nextVar;
+
+    /**
+     * Add the clauses of "the weights of the true inputs add up to at most
+     * k" to out, numbering its fresh variables from firstVar.
+     * Requires: inputs and weights have the same length, weights are
+     *           positive, inputs mention no variable >= firstVar, and
+     *           (inputs.length - 1) k fresh variables fit in an int
+     */
+    public SequentialCounter(int[] inputs, long[] weights, long k, int firstVar, ClauseSink out) {
+        nextVar = firstVar;
+        if (k < 0) {
+            // not even all false will do
+            out.addClause(new int[0], 0, 0);
+            return;
+        }
+        int width = (int) k;
+        // register of the inputs so far, previous[j - 1] meaning "at least j"
+        int[] previous = null;
+        int[] clause = new int[3];
+        for (int i = 0; i < inputs.length; i++) {
+            int x = inputs[i];
+            long w = weights[i];
+            if (w > k) {
+                clause[0] = Lit.not(x);
+                out.addClause(clause, 0, 1);
+            } else if (previous != null) {
+                // x on top of a sum above k - w overflows
+                clause[0] = Lit.not(x);
+                clause[1] = Lit.not(previous[(int) (k - w)]);
+                out.addClause(clause, 0, 2);
+            }
+            // the last input needs no register after it
+            if (i == inputs.length - 1 || width == 0) continue;
+
+            int[] register = new int[width];
+            for (int j = 0; j < width; j++) {
+                register[j] = Lit.make(nextVar++, false);
+            }
+            for (int j = 1; j <= width; j++) {
+                // x alone reaches its own weight
+                if (j <= w) {
+                    clause[0] = Lit.not(x);
+                    clause[1] = register[j - 1];
+                    out.addClause(clause, 0, 2);
+                }
+                if (previous == null) continue;
+                // the sum never goes down
+                clause[0] = Lit.not(previous[j - 1]);
+                clause[1] = register[j - 1];
+                out.addClause(clause, 0, 2);
+                // x adds its weight to the sum so far
+                if (j + w <= width) {
+                    clause[0] = Lit.not(x);
+                    clause[1] = Lit.not(previous[j - 1]);
+                    clause[2] = register[(int) (j + w) - 1];
+                    out.addClause(clause, 0, 3);
+                }
+            }
+            previous = register;
+        }
+    }
+
+    /**
+     * @return the lowest variable not used by the counter
+     */
+    public int nextVar() {
+        return nextVar;
+    }
+}
@@ -0,0 +1,106 @@
+package sat.encoding;
+
+import sat.cdcl.ClauseSink;
+import sat.cdcl.Lit;
+
+/**
+ * A totalizer (Bailleux and Boufkhad, 2003): clauses over fresh variables
+ * that count how many of some input literals are true, in unary.
+ *
+ * The inputs are the leaves of a balanced binary tree. Each inner node has
+ * one output per input below it, output k meaning "at least k of the
+ * inputs below are true", implied by the outputs of its two children. The
+ * root's outputs count all the inputs, so making output k false allows at
+ * most k - 1 of them to be true. If the totalizer is exact, the converse
+ * clauses are added too, so that making output k true forces at least k
+ * inputs true.
+ *
+ * n inputs take O(n log n) fresh variables and O(n^2) clauses.
+ */
+public class Totalizer {
+    private final ClauseSink out;
+    private final boolean exact;
+    private final int[] outputs;
+    private int nextVar;
+
+    /*
+     * Rep invariant:
+     *     outputs[k - 1] is the root output "at least k inputs are true"
+     */
+
+    /**
+     * Add the clauses of a totalizer over inputs to out, numbering its fresh
+     * variables from firstVar.
+     * Requires: inputs is non-empty and mentions no variable >= firstVar
+     * @param exact whether outputs also force their inputs, rather than
+     *            just being forced by them
+     */
+    public Totalizer(int[] inputs, int firstVar, ClauseSink out, boolean exact) {
+        this.out = out;
+        this.exact = exact;
+        nextVar = firstVar;
+        outputs = build(inputs, 0, inputs.length);
+    }
+
+    /**
+     * @return number of inputs
+     */
+    public int size() {
+        return outputs.length;
+    }
+
+    /**
+     * Requires: 1 <= k <= size()
+     * @return a literal that is true if at least k inputs are true (and,
+     *         for an exact totalizer, only if)
+     */
+    public int atLeast(int k) {
+        return outputs[k - 1];
+    }
+
+    /**
+     * @return the lowest variable not used by the totalizer
+     */
+    public int nextVar() {
+        return nextVar;
+    }
+
+    /*
+     * @return the outputs of the subtree over inputs[from..to)
+     */
+    private int[] build(int[] inputs, int from, int to) {
+        if (to - from == 1) return new int[] { inputs[from] };
+        int mid = (from + to) >>> 1;
+        int[] left = build(inputs, from, mid);
+        int[] right = build(inputs, mid, to);
+        int[] sum = new int[left.length + right.length];
+        for (int k = 0; k < sum.length; k++) {
+            sum[k] = Lit.make(nextVar++, false);
+        }
+
+        // i of the left and j of the right make i + j; index 0 stands for
+        // "at least 0", which always holds and is left out of the clauses
+        int[] clause = new int[3];
+        for (int i = 0; i <= left.length; i++) {
+            for (int j = 0; j <= right.length; j++) {
+                if (i + j > 0) {
+                    int n = 0;
+                    if (i > 0) clause[n++] = Lit.not(left[i - 1]);
+                    if (j > 0) clause[n++] = Lit.not(right[j - 1]);
+                    clause[n++] = sum[i + j - 1];
+                    out.addClause(clause, 0, n);
+                }
+                // fewer than i + 1 on the left and j + 1 on the right make
+                // fewer than i + j + 1
+                if (exact && i + j < sum.length) {
+                    int n = 0;
+                    if (i < left.length) clause[n++] = left[i];
+                    if (j < right.length) clause[n++] = right[j];
+                    clause[n++] = Lit.not(sum[i + j]);
+                    out.addClause(clause, 0, n);
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -43,4 +43,13 @@ public class Variable {
         Variable v = (Variable) o;
         return v.name.equals(name); 
     }
+
+    /**
+     * @return a hash code consistent with equals, so that variables can be
+     * used as keys of hashed maps such as ImHashMap
+     */
+    @Override
+    public int hashCode () {
+        return name.hashCode();
+    }
 }
@@ -9,6 +9,7 @@ import immutable.EmptyImList;
 import immutable.ImList;
 import immutable.NonEmptyImList;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 
 /**
@@ -166,16 +167,26 @@ public class Clause implements Iterable<Literal> {
     }
 
     private static ImList<Literal> reduce(ImList<Literal> literals, Literal l) {
-        if (literals.isEmpty()) return literals;
-        Literal first = literals.first();
-        ImList<Literal> rest = literals.rest();
-        if (first.equals(l)) return null;
-        else if (first.equals(l.getNegation())) return rest;
-        else {
-            ImList<Literal> restR = reduce(rest, l);
-            if (restR == null) return null;
-            return restR.add(first);
+        Literal negation = l.getNegation();
+        // walk to the negation of l, remembering the literals before it;
+        // the clause is satisfied if l itself is met on the way
+        ArrayList<Literal> prefix = new ArrayList<Literal>();
+        ImList<Literal> rest = literals;
+        while (!rest.isEmpty()) {
+            Literal first = rest.first();
+            if (first.equals(l)) return null;
+            if (first.equals(negation)) break;
+            prefix.add(first);
+            rest = rest.rest();
         }
+        if (rest.isEmpty()) return literals;
+
+        // a clause never holds both l and its negation, so the rest is kept
+        ImList<Literal> reduced = rest.rest();
+        for (int i = prefix.size() - 1; i >= 0; i--) {
+            reduced = reduced.add(prefix.get(i));
+        }
+        return reduced;
     }
 
     public String toString() {
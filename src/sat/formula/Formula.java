@@ -17,13 +17,15 @@ import sat.env.Variable;
 
 /**
  * Formula represents an immutable boolean formula in conjunctive normal form,
- * intended to be solved by a SAT solver.
+ * intended to be solved by a SAT solver. Besides clauses, it may hold
+ * pseudo-Boolean and cardinality constraints, which must hold as well.
  */
 public class Formula {
     private final ImList<Clause> clauses;
+    private final ImList<PseudoBoolean> constraints;
 
     // Rep invariant:
-    // clauses != null
+    // clauses != null and constraints != null
     // clauses contains no null elements (ensured by spec of ImList)
     //
     // Note: although a formula is intended to be a set,
@@ -38,9 +40,11 @@ public class Formula {
     // For example, if the list contains the two clauses (a,b) and (!c,d), then
     // the
     // corresponding formula is (a or b) and (!c or d).
+    // The constraints are conjoined with the clauses.
 
     void checkRep() {
         assert this.clauses != null : "SATProblem, Rep invariant: clauses non-null";
+        assert this.constraints != null : "SATProblem, Rep invariant: constraints non-null";
     }
 
     /**
@@ -74,7 +78,12 @@ public class Formula {
     }
 
     private Formula(ImList<Clause> clauses) {
+        this(clauses, new EmptyImList<PseudoBoolean>());
+    }
+
+    private Formula(ImList<Clause> clauses, ImList<PseudoBoolean> constraints) {
         this.clauses = clauses;
+        this.constraints = constraints;
     }
 
     /**
@@ -83,7 +92,28 @@ public class Formula {
      * @return a new problem with the clauses of this, but c added
      */
     public Formula addClause(Clause c) {
-        return new Formula(clauses.add(c));
+        return new Formula(clauses.add(c), constraints);
+    }
+
+    /**
+     * Add a pseudo-Boolean or cardinality constraint to this problem. The
+     * CDCL and portfolio solvers propagate it directly; the other engines
+     * of SATSolver solve its CNF encoding (see sat.encoding).
+     * 
+     * @return a new problem with the clauses and constraints of this, but c
+     *         added
+     */
+    public Formula addConstraint(PseudoBoolean c) {
+        return new Formula(clauses, constraints.add(c));
+    }
+
+    /**
+     * Get the constraints of the formula other than clauses.
+     * 
+     * @return list of constraints
+     */
+    public ImList<PseudoBoolean> getConstraints() {
+        return constraints;
     }
 
     /**
@@ -113,10 +143,15 @@ public class Formula {
         for (Clause c : clauses) {
             pclauses = pclauses.add(c);
         }
-        return new Formula(pclauses);
+        ImList<PseudoBoolean> pconstraints = p.constraints;
+        for (PseudoBoolean c : constraints) {
+            pconstraints = pconstraints.add(c);
+        }
+        return new Formula(pclauses, pconstraints);
     }
 
     /**
+     * Requires: neither this nor p has constraints other than clauses
      * @return a new problem corresponding to the disjunction of this and p
      */
     public Formula or(Formula p) {
@@ -132,6 +167,7 @@ public class Formula {
     }
 
     /**
+     * Requires: this has no constraints other than clauses
      * @return a new problem corresponding to the negation of this
      */
     public Formula not() {
@@ -168,6 +204,8 @@ public class Formula {
         String result = "Problem[";
         for (Clause c : clauses)
             result += "\n" + c;
+        for (PseudoBoolean c : constraints)
+            result += "\n" + c;
         return result + "]";
     }
 }
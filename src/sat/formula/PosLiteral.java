@@ -6,9 +6,10 @@
  */
 package sat.formula;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import sat.env.Variable;
-import immutable.ImListMap;
-import immutable.ImMap;
 
 /**
  * Class representing positive literals.
@@ -20,7 +21,17 @@ public class PosLiteral extends Literal {
      * Mapping of positive literals that have already been allocated, keyed on their names
      * Invariant: non null, and no key or value is null
      */
-    static ImMap<String,PosLiteral> allocatedPosLiterals = new ImListMap<String,PosLiteral>();
+    static final ConcurrentHashMap<String,PosLiteral> allocatedPosLiterals = new ConcurrentHashMap<String,PosLiteral>();
+
+    /*
+     * Cache of allocatedPosLiterals for names that are numbers, as in DIMACS
+     * files, indexed by that number. Entries are null until looked up once.
+     * Invariant: numbered.get(n) is null or allocatedPosLiterals.get(Integer.toString(n))
+     */
+    private static volatile AtomicReferenceArray<PosLiteral> numbered = new AtomicReferenceArray<PosLiteral>(1024);
+
+    // numbered names at or above this are only kept in allocatedPosLiterals
+    private static final int MAX_NUMBERED = 1 << 24;
 
     private PosLiteral (String name) {
         super (name);
@@ -33,21 +44,69 @@ public class PosLiteral extends Literal {
     /**
      * Factory method. Preserves the invariant that only one object
      * will exist to represent a literal of a given name. 
+     * Takes constant time and may be called from several threads at once.
      * @return the positive literal with the given name
      */
     public static PosLiteral make (String name) {
-        PosLiteral literal = allocatedPosLiterals.get(name);
-        if (literal==null) {
-            literal = new PosLiteral(name);
-            NegLiteral negated = new NegLiteral(name);
-            literal.negation = negated;
-            negated.negation = literal;
-            allocatedPosLiterals = allocatedPosLiterals.put(name, literal);
+        int number = number(name);
+        if (number >= 0) {
+            AtomicReferenceArray<PosLiteral> table = numbered;
+            if (number < table.length()) {
+                PosLiteral literal = table.get(number);
+                if (literal != null) return literal;
+            }
         }
-        literal.checkRep(); 
+        PosLiteral literal = allocatedPosLiterals.computeIfAbsent(name, PosLiteral::allocate);
+        if (number >= 0) cache(number, literal);
+        return literal;
+    }
+
+    private static PosLiteral allocate (String name) {
+        PosLiteral literal = new PosLiteral(name);
+        NegLiteral negated = new NegLiteral(name);
+        literal.negation = negated;
+        negated.negation = literal;
+        literal.checkRep();
         return literal;
     }
 
+    /*
+     * @return n if name is the canonical decimal form of some 0 <= n < MAX_NUMBERED,
+     * otherwise -1
+     */
+    private static int number (String name) {
+        int length = name.length();
+        if (length == 0 || length > 8 || (length > 1 && name.charAt(0) == '0')) return -1;
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n < MAX_NUMBERED ? n : -1;
+    }
+
+    private static void cache (int number, PosLiteral literal) {
+        AtomicReferenceArray<PosLiteral> table = numbered;
+        if (number >= table.length()) {
+            synchronized (PosLiteral.class) {
+                table = numbered;
+                if (number >= table.length()) {
+                    int length = table.length();
+                    while (length <= number) length *= 2;
+                    AtomicReferenceArray<PosLiteral> grown = new AtomicReferenceArray<PosLiteral>(length);
+                    for (int i = 0; i < table.length(); i++) {
+                        grown.set(i, table.get(i));
+                    }
+                    numbered = grown;
+                    table = grown;
+                }
+            }
+        }
+        // a store lost to a concurrent grow only costs a later map lookup
+        table.set(number, literal);
+    }
+
     public String toString () {
         return var.toString();
     }
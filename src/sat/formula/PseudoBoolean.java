@@ -0,0 +1,138 @@
+package sat.formula;
+
+import java.util.Arrays;
+
+import immutable.EmptyImList;
+import immutable.ImList;
+
+/**
+ * PseudoBoolean represents an immutable linear constraint over literals,
+ * w1*l1 + w2*l2 + ... + wn*ln >= bound, in which a literal counts its
+ * weight when it is true. Cardinality constraints such as "at most k of
+ * these are true" are the special case of unit weights.
+ *
+ * A formula can hold such constraints alongside its clauses; see
+ * Formula.addConstraint.
+ */
+public class PseudoBoolean {
+    private final ImList<Literal> literals;
+    private final ImList<Long> weights;
+    private final long bound;
+
+    // Rep invariant:
+    // literals and weights are non-null and have the same size
+    // every weight is positive
+    // no two literals are over the same variable
+    //
+    // Abstraction function:
+    // the i-th element of weights is the weight of the i-th element of
+    // literals, and the constraint is that the weights of the true
+    // literals add up to at least bound
+
+    void checkRep() {
+        assert literals != null && weights != null : "PseudoBoolean, Rep invariant: non-null";
+        assert literals.size() == weights.size() : "PseudoBoolean, Rep invariant: one weight per literal";
+    }
+
+    private PseudoBoolean(ImList<Literal> literals, ImList<Long> weights, long bound) {
+        this.literals = literals;
+        this.weights = weights;
+        this.bound = bound;
+        checkRep();
+    }
+
+    /**
+     * Requires: weights has one positive weight per literal, and no two
+     *           literals are over the same variable
+     * @return the constraint that the weights of the true literals add up
+     *         to at least bound
+     */
+    public static PseudoBoolean atLeast(long bound, Literal[] literals, long[] weights) {
+        ImList<Literal> ls = new EmptyImList<Literal>();
+        ImList<Long> ws = new EmptyImList<Long>();
+        for (int i = literals.length - 1; i >= 0; i--) {
+            ls = ls.add(literals[i]);
+            ws = ws.add(weights[i]);
+        }
+        return new PseudoBoolean(ls, ws, bound);
+    }
+
+    /**
+     * Requires: weights has one positive weight per literal, and no two
+     *           literals are over the same variable
+     * @return the constraint that the weights of the true literals add up
+     *         to at most bound
+     */
+    public static PseudoBoolean atMost(long bound, Literal[] literals, long[] weights) {
+        // at most bound true is at least total - bound false
+        Literal[] negated = new Literal[literals.length];
+        long total = 0;
+        for (int i = 0; i < literals.length; i++) {
+            negated[i] = literals[i].getNegation();
+            total += weights[i];
+        }
+        return atLeast(total - bound, negated, weights);
+    }
+
+    /**
+     * Requires: no two literals are over the same variable
+     * @return the constraint that at least k of the literals are true
+     */
+    public static PseudoBoolean atLeast(int k, Literal... literals) {
+        return atLeast(k, literals, ones(literals.length));
+    }
+
+    /**
+     * Requires: no two literals are over the same variable
+     * @return the constraint that at most k of the literals are true
+     */
+    public static PseudoBoolean atMost(int k, Literal... literals) {
+        return atMost(k, literals, ones(literals.length));
+    }
+
+    private static long[] ones(int n) {
+        long[] weights = new long[n];
+        Arrays.fill(weights, 1);
+        return weights;
+    }
+
+    /**
+     * @return the literals, in the same order as getWeights()
+     */
+    public ImList<Literal> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * @return the weight of each literal, in the same order as
+     *         getLiterals()
+     */
+    public ImList<Long> getWeights() {
+        return weights;
+    }
+
+    /**
+     * @return the least total weight of true literals that satisfies this
+     */
+    public long getBound() {
+        return bound;
+    }
+
+    /**
+     * @return number of literals in this constraint
+     */
+    public int size() {
+        return literals.size();
+    }
+
+    public String toString() {
+        String result = "PseudoBoolean[";
+        ImList<Long> w = weights;
+        for (Literal l : literals) {
+            if (w != weights) result += " + ";
+            result += w.first() + "*" + l;
+            w = w.rest();
+        }
+        return result + " >= " + bound + "]";
+    }
+}
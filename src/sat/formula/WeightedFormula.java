@@ -0,0 +1,99 @@
+package sat.formula;
+
+import immutable.EmptyImList;
+import immutable.ImList;
+
+/**
+ * WeightedFormula represents an immutable weighted partial MaxSAT problem:
+ * hard clauses, which must all be satisfied, and soft clauses, each with a
+ * positive weight that is paid if it is violated.
+ */
+public class WeightedFormula {
+    private final Formula hard;
+    private final ImList<Clause> soft;
+    private final ImList<Long> weights;
+
+    // Rep invariant:
+    // hard, soft and weights are non-null
+    // soft and weights have the same size, and every weight is positive
+    //
+    // Abstraction function:
+    // hard is the formula every solution must satisfy; the i-th clause of
+    // soft costs the i-th element of weights when a solution violates it
+
+    void checkRep() {
+        assert hard != null && soft != null && weights != null : "WeightedFormula, Rep invariant: non-null";
+        assert soft.size() == weights.size() : "WeightedFormula, Rep invariant: one weight per soft clause";
+    }
+
+    /**
+     * Create a problem with no clauses.
+     */
+    public WeightedFormula() {
+        this(new Formula(), new EmptyImList<Clause>(), new EmptyImList<Long>());
+    }
+
+    /**
+     * Create a problem whose hard clauses are those of hard, with no soft
+     * clauses.
+     * Requires: hard is non-null
+     */
+    public WeightedFormula(Formula hard) {
+        this(hard, new EmptyImList<Clause>(), new EmptyImList<Long>());
+    }
+
+    private WeightedFormula(Formula hard, ImList<Clause> soft, ImList<Long> weights) {
+        this.hard = hard;
+        this.soft = soft;
+        this.weights = weights;
+        checkRep();
+    }
+
+    /**
+     * @return a new problem with the clauses of this, and c as a hard clause
+     */
+    public WeightedFormula addHard(Clause c) {
+        return new WeightedFormula(hard.addClause(c), soft, weights);
+    }
+
+    /**
+     * Requires: weight > 0
+     * @return a new problem with the clauses of this, and c as a soft clause
+     *         of the given weight
+     */
+    public WeightedFormula addSoft(Clause c, long weight) {
+        return new WeightedFormula(hard, soft.add(c), weights.add(weight));
+    }
+
+    /**
+     * @return the hard clauses
+     */
+    public Formula getHard() {
+        return hard;
+    }
+
+    /**
+     * @return the soft clauses, in the same order as getWeights()
+     */
+    public ImList<Clause> getSoftClauses() {
+        return soft;
+    }
+
+    /**
+     * @return the weight of each soft clause, in the same order as
+     *         getSoftClauses()
+     */
+    public ImList<Long> getWeights() {
+        return weights;
+    }
+
+    public String toString() {
+        String result = "WeightedProblem[" + hard;
+        ImList<Long> w = weights;
+        for (Clause c : soft) {
+            result += "\n" + w.first() + ": " + c;
+            w = w.rest();
+        }
+        return result + "]";
+    }
+}
@@ -0,0 +1,507 @@
+package sat.lookahead;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.encoding.ConstraintEncoder;
+import sat.env.Environment;
+import sat.formula.Formula;
+
+/**
+ * A lookahead DPLL solver, in the style of march.
+ *
+ * Like SATSolver's DPLL search it branches on one variable at a time and
+ * backtracks chronologically, but it picks the variable by looking ahead:
+ * both values of each candidate variable are tentatively assigned and
+ * propagated, and the reduction of the formula each causes is measured by
+ * the clauses it shortens without satisfying, weighted so that a clause
+ * left with two free literals counts 1, one left with three 1/5, and so
+ * on. The variable whose two values together reduce the formula most
+ * (mostly the product of the two reductions, so that both branches have
+ * to pay off) is branched on, the value that reduces less first.
+ *
+ * A value whose propagation conflicts is a failed literal: its negation
+ * is assigned at the current node and lookahead starts over. When a value
+ * reduces the formula by more than an adaptive trigger, a double
+ * lookahead probes up to DOUBLE_LOOKAHEAD_CAP more variables under it. A
+ * second value that fails under the first is learnt as a binary clause,
+ * local to the current node: it is kept while the node's subtree is
+ * searched and removed on backtracking out of it. If both values of a
+ * second variable fail, the first is a failed literal too.
+ *
+ * Clauses are kept with counts of their true and false literals, and the
+ * clauses of each literal in an occurrence list, so every reduction is
+ * seen as it happens; lookahead spends far more time propagating than
+ * CDCL does, and makes up for it with far smaller search trees on small
+ * hard formulas such as random 3-SAT near the phase transition.
+ */
+public class LookaheadSolver {
+    private static final byte UNASSIGNED = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+
+    // results of lookahead other than a literal to branch on
+    private static final int CONFLICT = -1;
+    private static final int SATISFIED = -2;
+
+    // free variables looked ahead on at each node, in order of occurrences
+    private static final int CANDIDATES = 200;
+    // second-level variables probed by one double lookahead
+    private static final int DOUBLE_LOOKAHEAD_CAP = 16;
+    // factor by which the double lookahead trigger falls at every node
+    private static final double TRIGGER_DECAY = 0.85;
+    // passes over the candidates while failed literals keep turning up
+    private static final int MAX_PASSES = 4;
+    // WEIGHTS[k] is the weight of a clause reduced to k free literals
+    private static final double[] WEIGHTS = { 0, 0, 1, 0.2, 0.05, 0.01, 0.003, 0.001 };
+
+    // literals of clause c are lits[start[c]..start[c+1])
+    private int[] start = new int[16];
+    private int[] lits = new int[64];
+    private int numClauses;
+    // clauses in the input; the rest were learnt by double lookahead
+    private final int numInput;
+    private int[][] occurrences;
+    private int[] numOccurrences;
+    private int[] numTrue = new int[16];
+    private int[] numFalse = new int[16];
+    private int satisfied;
+
+    private final int numVars;
+    private final byte[] values;
+    private final int[] trail;
+    private int trailSize;
+    // trail position of the next literal whose clauses must be updated
+    private int qhead;
+    // weighted reduction caused by the literals propagated since it was reset
+    private double reduction;
+    private double trigger;
+    // variables in decreasing order of occurrences
+    private final int[] order;
+    private final int[] mark;
+
+    private boolean ok = true;
+    private long nodes;
+    private volatile boolean interrupted;
+
+    /*
+     * Rep invariant:
+     *     every clause has distinct variables and no literal with its
+     *     negation
+     *     for every clause c, numTrue[c] and numFalse[c] count its literals
+     *     made true and false by trail[0..qhead), and satisfied counts the
+     *     clauses with numTrue > 0
+     *     occurrences[l][0..numOccurrences[l]) are the clauses containing
+     *     l, in the order they were added
+     *     qhead <= trailSize, and values holds the values of trail[0..trailSize)
+     */
+
+    /*
+     * A branch point of the search: where the trail and the clauses ended
+     * before branching, and the literal that was tried first.
+     */
+    private static class Branch {
+        final int trailMark;
+        final int clauseMark;
+        final int literal;
+        boolean negationTried;
+
+        Branch(int trailMark, int clauseMark, int literal) {
+            this.trailMark = trailMark;
+            this.clauseMark = clauseMark;
+            this.literal = literal;
+        }
+    }
+
+    /**
+     * Create a solver for the given formula. The formula is not modified.
+     * Requires: formula is non-null and has no constraints
+     * @throws IllegalArgumentException if formula has constraints
+     */
+    public LookaheadSolver(IntFormula formula) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("lookahead takes clauses only; encode the constraints first");
+        }
+        numVars = formula.numVars();
+        values = new byte[numVars];
+        trail = new int[numVars];
+        mark = new int[numVars];
+        occurrences = new int[2 * numVars][];
+        numOccurrences = new int[2 * numVars];
+        for (int l = 0; l < 2 * numVars; l++) {
+            occurrences[l] = new int[4];
+        }
+
+        final int[] counts = new int[numVars];
+        ClauseArena input = formula.getClauses();
+        for (int c = 0; c < input.end() && ok; c = input.next(c)) {
+            for (int i = 0; i < input.size(c); i++) {
+                counts[Lit.var(input.lit(c, i))]++;
+            }
+            addClause(input.toArray(c));
+            ok = ok && propagate();
+        }
+        numInput = numClauses;
+
+        Integer[] sorted = new Integer[numVars];
+        for (int v = 0; v < numVars; v++) {
+            sorted[v] = v;
+        }
+        Arrays.sort(sorted, (a, b) -> counts[b] - counts[a]);
+        order = new int[numVars];
+        for (int v = 0; v < numVars; v++) {
+            order[v] = sorted[v];
+        }
+    }
+
+    /**
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public static Environment solve(Formula formula) {
+        IntFormula f = IntFormula.encode(formula);
+        // constraints are solved as their clauses, without the fresh variables
+        boolean[] model = new LookaheadSolver(ConstraintEncoder.toCnf(f)).solve();
+        return model == null ? null : f.toEnvironment(Arrays.copyOf(model, f.numVars()));
+    }
+
+    /**
+     * Stop a search running on another thread as soon as possible; it then
+     * returns null.
+     */
+    public void interrupt() {
+        interrupted = true;
+    }
+
+    /**
+     * @return number of nodes of the search tree visited so far
+     */
+    public long numNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return number of clauses learnt by double lookahead that are still
+     *         kept
+     */
+    public int numLearnts() {
+        return numClauses - numInput;
+    }
+
+    /**
+     * Search for a satisfying assignment.
+     * Requires: solve has not been called before
+     * @return a satisfying assignment, model[v] true iff variable v is
+     *         true, or null if there is none or the search was interrupted
+     */
+    public boolean[] solve() {
+        ArrayList<Branch> stack = new ArrayList<Branch>();
+        boolean conflict = !ok;
+
+        while (!interrupted) {
+            int branch = conflict ? CONFLICT : lookahead();
+            if (branch == SATISFIED) {
+                boolean[] model = new boolean[numVars];
+                for (int var = 0; var < numVars; var++) {
+                    model[var] = values[var] == TRUE;
+                }
+                return model;
+            }
+            if (branch != CONFLICT) {
+                stack.add(new Branch(trailSize, numClauses, branch));
+                assign(branch);
+                conflict = !propagate();
+                continue;
+            }
+
+            // Backtrack to the most recent branch point with an untried branch
+            while (true) {
+                if (stack.isEmpty()) {
+                    return null;
+                }
+                Branch top = stack.get(stack.size() - 1);
+                backtrack(top.trailMark, top.clauseMark);
+                if (top.negationTried) {
+                    stack.remove(stack.size() - 1);
+                } else {
+                    top.negationTried = true;
+                    assign(Lit.not(top.literal));
+                    conflict = !propagate();
+                    break;
+                }
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Look ahead at the current node, assigning failed literals.
+     * Requires: everything on the trail is propagated without conflict
+     * @return the literal to branch on, SATISFIED if every clause is, or
+     *         CONFLICT if failed literals lead to a conflict
+     */
+    private int lookahead() {
+        nodes++;
+        trigger *= TRIGGER_DECAY;
+        int best = -1;
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            // with every variable assigned and no conflict, every clause is satisfied
+            if (satisfied == numClauses) return SATISFIED;
+            best = -1;
+            double bestScore = -1;
+            boolean failed = false;
+            int tried = 0;
+            for (int var : order) {
+                if (tried == CANDIDATES) break;
+                if (values[var] != UNASSIGNED) continue;
+                tried++;
+                int pos = Lit.make(var, false);
+                int neg = Lit.make(var, true);
+                double posScore = probe(pos);
+                double negScore = posScore < 0 ? 0 : probe(neg);
+                if (posScore < 0 || negScore < 0) {
+                    // a failed literal: its negation holds in this subtree
+                    assign(posScore < 0 ? neg : pos);
+                    if (!propagate()) return CONFLICT;
+                    failed = true;
+                    continue;
+                }
+                double score = 1024 * posScore * negScore + posScore + negScore;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = posScore <= negScore ? pos : neg;
+                }
+            }
+            // failed literals change the scores, so look again
+            if (!failed) return best;
+        }
+        if (satisfied == numClauses) return SATISFIED;
+        // a failed literal may have assigned the best variable since
+        if (best >= 0 && values[Lit.var(best)] == UNASSIGNED) return best;
+        for (int var : order) {
+            if (values[var] == UNASSIGNED) return Lit.make(var, false);
+        }
+        return SATISFIED;
+    }
+
+    /*
+     * Tentatively assign lit and propagate, with a double lookahead if it
+     * reduces the formula enough, then undo everything except learnt
+     * clauses.
+     * Requires: lit is unassigned and the trail is fully propagated
+     * @return the weighted reduction lit causes, or -1 if it fails
+     */
+    private double probe(int lit) {
+        int trailMark = trailSize;
+        reduction = 0;
+        assign(lit);
+        if (!propagate()) {
+            undo(trailMark);
+            return -1;
+        }
+        double score = reduction;
+        boolean failed = false;
+        if (score > trigger) {
+            failed = !doubleLookahead(lit, score);
+        }
+        undo(trailMark);
+        return failed ? -1 : score;
+    }
+
+    /*
+     * Probe second-level variables under lit, which is true, propagated
+     * and reduces the formula by score. A second literal that fails is
+     * learnt in a binary clause with the negation of lit, and its negation
+     * is assigned.
+     * @return false iff lit turns out to fail
+     */
+    private boolean doubleLookahead(int lit, double score) {
+        int probed = 0;
+        boolean learnt = false;
+        for (int var : order) {
+            if (probed == DOUBLE_LOOKAHEAD_CAP) break;
+            if (values[var] != UNASSIGNED) continue;
+            probed++;
+            for (int second : new int[] { Lit.make(var, false), Lit.make(var, true) }) {
+                if (values[var] != UNASSIGNED) break;
+                int trailMark = trailSize;
+                assign(second);
+                boolean conflict = !propagate();
+                undo(trailMark);
+                if (!conflict) continue;
+
+                learnt = true;
+                addClause(new int[] { Lit.not(lit), Lit.not(second) });
+                if (!propagate()) return false;
+            }
+        }
+        // raise the trigger after a double lookahead that found nothing
+        if (!learnt) trigger = score;
+        return true;
+    }
+
+    /*
+     * Add a clause over existing variables, whose counts are taken from
+     * the current assignment, and assign its literal if it is unit.
+     * Requires: the trail is fully propagated
+     */
+    private void addClause(int[] clause) {
+        int size = 0;
+        int pending = -1;
+        boolean isSatisfied = false;
+        for (int lit : clause) {
+            int var = Lit.var(lit);
+            // mark[var] is the literal plus one if this clause has var
+            if (mark[var] == lit + 1) continue;
+            if (mark[var] != 0) {
+                isSatisfied = true;
+                break;
+            }
+            mark[var] = lit + 1;
+            clause[size++] = lit;
+        }
+        for (int lit : clause) {
+            mark[Lit.var(lit)] = 0;
+        }
+        // a tautology is always true
+        if (isSatisfied) return;
+
+        int c = numClauses++;
+        if (c + 2 > start.length) {
+            start = Arrays.copyOf(start, 2 * start.length);
+            numTrue = Arrays.copyOf(numTrue, 2 * numTrue.length);
+            numFalse = Arrays.copyOf(numFalse, 2 * numFalse.length);
+        }
+        int from = start[c];
+        if (from + size > lits.length) lits = Arrays.copyOf(lits, Math.max(2 * lits.length, from + size));
+        start[c + 1] = from + size;
+        numTrue[c] = 0;
+        numFalse[c] = 0;
+        for (int i = 0; i < size; i++) {
+            int lit = clause[i];
+            lits[from + i] = lit;
+            if (numOccurrences[lit] == occurrences[lit].length) {
+                occurrences[lit] = Arrays.copyOf(occurrences[lit], 2 * occurrences[lit].length);
+            }
+            occurrences[lit][numOccurrences[lit]++] = c;
+            byte value = valueOf(lit);
+            if (value == TRUE) numTrue[c]++;
+            else if (value == FALSE) numFalse[c]++;
+            else pending = lit;
+        }
+        if (numTrue[c] > 0) {
+            satisfied++;
+        } else if (numFalse[c] == size) {
+            ok = false;
+        } else if (numFalse[c] == size - 1) {
+            assign(pending);
+        }
+    }
+
+    private byte valueOf(int lit) {
+        byte value = values[Lit.var(lit)];
+        if (value == UNASSIGNED || !Lit.isNegative(lit)) return value;
+        return value == TRUE ? FALSE : TRUE;
+    }
+
+    /*
+     * Make lit true, leaving its clauses to propagate().
+     * Requires: lit is unassigned
+     */
+    private void assign(int lit) {
+        values[Lit.var(lit)] = Lit.isNegative(lit) ? FALSE : TRUE;
+        trail[trailSize++] = lit;
+    }
+
+    /*
+     * Update the clauses of every literal assigned but not yet propagated,
+     * assigning the last free literal of clauses that become unit, and
+     * adding the weights of the clauses reduced to reduction.
+     * @return false iff some clause has all its literals false
+     */
+    private boolean propagate() {
+        if (!ok) return false;
+        while (qhead < trailSize) {
+            int lit = trail[qhead++];
+            int falseLit = Lit.not(lit);
+            int[] occ = occurrences[lit];
+            for (int i = 0; i < numOccurrences[lit]; i++) {
+                if (numTrue[occ[i]]++ == 0) satisfied++;
+            }
+            occ = occurrences[falseLit];
+            int n = numOccurrences[falseLit];
+            for (int i = 0; i < n; i++) {
+                numFalse[occ[i]]++;
+            }
+
+            // all counts are up to date before looking for units
+            for (int i = 0; i < n; i++) {
+                int c = occ[i];
+                if (numTrue[c] > 0) continue;
+                int free = start[c + 1] - start[c] - numFalse[c];
+                if (free >= 2) {
+                    reduction += WEIGHTS[Math.min(free, WEIGHTS.length - 1)];
+                    continue;
+                }
+                // the counts miss literals assigned but not yet propagated
+                int unit = -1;
+                boolean pending = false;
+                for (int k = start[c]; k < start[c + 1]; k++) {
+                    byte value = valueOf(lits[k]);
+                    if (value == TRUE) {
+                        pending = true;
+                        break;
+                    }
+                    if (value == UNASSIGNED) unit = lits[k];
+                }
+                if (pending) continue;
+                if (unit < 0) return false;
+                assign(unit);
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Unassign trail[trailMark..trailSize), restoring the counts of the
+     * clauses of those that were propagated.
+     */
+    private void undo(int trailMark) {
+        for (int i = trailSize - 1; i >= trailMark; i--) {
+            int lit = trail[i];
+            if (i < qhead) {
+                int[] occ = occurrences[lit];
+                for (int k = 0; k < numOccurrences[lit]; k++) {
+                    if (--numTrue[occ[k]] == 0) satisfied--;
+                }
+                int falseLit = Lit.not(lit);
+                occ = occurrences[falseLit];
+                for (int k = 0; k < numOccurrences[falseLit]; k++) {
+                    numFalse[occ[k]]--;
+                }
+            }
+            values[Lit.var(lit)] = UNASSIGNED;
+        }
+        trailSize = trailMark;
+        qhead = Math.min(qhead, trailMark);
+    }
+
+    /*
+     * Return to a branch point: drop the clauses learnt since, which are
+     * the last ones of every occurrence list, then undo the trail.
+     */
+    private void backtrack(int trailMark, int clauseMark) {
+        for (int c = numClauses - 1; c >= clauseMark; c--) {
+            if (numTrue[c] > 0) satisfied--;
+            for (int k = start[c]; k < start[c + 1]; k++) {
+                numOccurrences[lits[k]]--;
+            }
+        }
+        numClauses = clauseMark;
+        undo(trailMark);
+        ok = true;
+    }
+}
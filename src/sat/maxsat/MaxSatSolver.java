@@ -0,0 +1,257 @@
+package sat.maxsat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.ClauseArena;
+import sat.cdcl.ClauseSink;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.PbConstraint;
+import sat.cdcl.Result;
+import sat.encoding.Totalizer;
+
+/**
+ * A weighted partial MaxSAT solver: finds an assignment that satisfies
+ * every hard clause and minimizes the total weight of the soft clauses it
+ * violates. Core-guided, with the OLL algorithm as in RC2.
+ *
+ * Every soft clause gets an assumption literal that is true only if the
+ * clause holds: the clause's literal if it is a unit, otherwise a fresh
+ * relaxation variable r with the hard clause (clause or not r). One
+ * incremental CDCLSolver is searched under the assumptions. Each time the
+ * search fails, the assumptions it blames form a core, of which at least
+ * one must be false; the core's least weight is added to the cost, taken
+ * off every assumption in the core, and a totalizer over the core's
+ * violations gets an assumption "at most one of these is violated" of
+ * that weight. When that assumption is itself in a later core, it is
+ * relaxed to "at most two", and so on. The first assignment that
+ * satisfies every assumption of positive weight is optimal.
+ *
+ * Cores are trimmed by re-solving under just the core a few times, and
+ * weights are stratified: assumptions of lower weight are only added once
+ * the heavier ones can be satisfied, so that cheap cores do not crowd out
+ * expensive ones.
+ */
+public class MaxSatSolver implements ClauseSink, SoftClauseSink {
+    // re-solves under a core to shrink it
+    private static final int TRIM_ROUNDS = 5;
+
+    private final IntFormula hard = new IntFormula();
+    private final ClauseArena soft = new ClauseArena();
+    private long[] weights = new long[16];
+    private long emptyCost;
+    private long cost = -1;
+
+    /*
+     * An assumption "at most bound - 1 of the inputs of totalizer are
+     * true", which is the negation of its output for bound.
+     */
+    private static class Bound {
+        final Totalizer totalizer;
+        final int bound;
+
+        Bound(Totalizer totalizer, int bound) {
+            this.totalizer = totalizer;
+            this.bound = bound;
+        }
+    }
+
+    /**
+     * Create a solver with no clauses.
+     */
+    public MaxSatSolver() {
+    }
+
+    /**
+     * Create a solver whose hard clauses and constraints are those of
+     * formula, which is not modified.
+     * Requires: formula is non-null
+     */
+    public MaxSatSolver(IntFormula formula) {
+        ClauseArena clauses = formula.getClauses();
+        hard.ensureVars(formula.numVars());
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            hard.addClause(clauses.toArray(c));
+        }
+        for (PbConstraint c : formula.getConstraints()) {
+            hard.addConstraint(c);
+        }
+    }
+
+    /**
+     * Add a hard clause, which every solution must satisfy.
+     */
+    @Override
+    public void addClause(int[] lits, int from, int length) {
+        hard.addClause(lits, from, length);
+    }
+
+    /**
+     * Add a soft clause, whose violation costs weight.
+     * Requires: weight > 0
+     */
+    @Override
+    public void addSoftClause(int[] lits, int from, int length, long weight) {
+        for (int i = from; i < from + length; i++) {
+            hard.ensureVars(Lit.var(lits[i]) + 1);
+        }
+        int index = soft.count();
+        if (index == weights.length) weights = Arrays.copyOf(weights, 2 * index);
+        weights[index] = weight;
+        soft.add(lits, from, length, false);
+    }
+
+    /**
+     * @return the total weight of the soft clauses violated by the last
+     *         solution found, or -1 if none has been
+     */
+    public long cost() {
+        return cost;
+    }
+
+    /**
+     * Find an optimal solution.
+     * Requires: solve has not been called before
+     * @return an assignment, model[v] true iff variable v is true, that
+     *         satisfies every hard clause and violates soft clauses of
+     *         least total weight; or null if the hard clauses have no
+     *         solution
+     */
+    public boolean[] solve() {
+        int numVars = hard.numVars();
+        CDCLSolver solver = new CDCLSolver(hard);
+        // weight of each assumption literal, in the order they were made
+        LinkedHashMap<Integer, Long> weight = new LinkedHashMap<Integer, Long>();
+        HashMap<Integer, Bound> bounds = new HashMap<Integer, Bound>();
+
+        int i = 0;
+        for (int c = 0; c < soft.end(); c = soft.next(c), i++) {
+            int size = soft.size(c);
+            if (size == 0) {
+                emptyCost += weights[i];
+                continue;
+            }
+            int assumption;
+            if (size == 1) {
+                assumption = soft.lit(c, 0);
+            } else {
+                assumption = Lit.make(solver.numVars(), false);
+                int[] clause = Arrays.copyOf(soft.toArray(c), size + 1);
+                clause[size] = Lit.not(assumption);
+                solver.addClause(clause);
+            }
+            weight.merge(assumption, weights[i], Long::sum);
+        }
+
+        long level = maxWeightBelow(weight, Long.MAX_VALUE);
+        while (true) {
+            int[] assumptions = assumptions(weight, level);
+            Result result = solver.search(assumptions);
+            if (result == Result.SAT) {
+                long next = maxWeightBelow(weight, level);
+                if (next > 0) {
+                    level = next;
+                    continue;
+                }
+                boolean[] model = Arrays.copyOf(solver.model(), numVars);
+                cost = costOf(model);
+                return model;
+            }
+            if (result != Result.UNSAT) {
+                throw new IllegalStateException("MaxSAT search was interrupted");
+            }
+
+            int[] core = trim(solver, solver.failedAssumptions());
+            // nothing to blame but the hard clauses
+            if (core.length == 0) return null;
+            long min = Long.MAX_VALUE;
+            for (int a : core) {
+                min = Math.min(min, weight.get(a));
+            }
+
+            for (int a : core) {
+                long left = weight.get(a) - min;
+                if (left == 0) weight.remove(a);
+                else weight.put(a, left);
+                // a bound in the core is relaxed by one
+                Bound b = bounds.get(a);
+                if (b != null && b.bound < b.totalizer.size()) {
+                    int relaxed = Lit.not(b.totalizer.atLeast(b.bound + 1));
+                    weight.merge(relaxed, min, Long::sum);
+                    bounds.put(relaxed, new Bound(b.totalizer, b.bound + 1));
+                }
+            }
+            if (core.length == 1) {
+                // the assumption can never hold
+                solver.addClause(Lit.not(core[0]));
+                continue;
+            }
+            int[] violated = new int[core.length];
+            for (int k = 0; k < core.length; k++) {
+                violated[k] = Lit.not(core[k]);
+            }
+            Totalizer totalizer = new Totalizer(violated, solver.numVars(), solver, false);
+            int atMostOne = Lit.not(totalizer.atLeast(2));
+            weight.merge(atMostOne, min, Long::sum);
+            bounds.put(atMostOne, new Bound(totalizer, 2));
+        }
+    }
+
+    /*
+     * @return the assumption literals of weight at least level
+     */
+    private static int[] assumptions(Map<Integer, Long> weight, long level) {
+        int[] out = new int[weight.size()];
+        int n = 0;
+        for (Map.Entry<Integer, Long> e : weight.entrySet()) {
+            if (e.getValue() >= level) out[n++] = e.getKey();
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /*
+     * @return the largest weight less than limit, or 0 if there is none
+     */
+    private static long maxWeightBelow(Map<Integer, Long> weight, long limit) {
+        long max = 0;
+        for (long w : weight.values()) {
+            if (w < limit) max = Math.max(max, w);
+        }
+        return max;
+    }
+
+    /*
+     * Shrink a core by searching under just its assumptions, which blames
+     * a subset of them, while that keeps helping.
+     */
+    private static int[] trim(CDCLSolver solver, int[] core) {
+        for (int round = 0; round < TRIM_ROUNDS && core.length > 1; round++) {
+            if (solver.search(core) != Result.UNSAT) break;
+            int[] smaller = solver.failedAssumptions();
+            if (smaller.length >= core.length) break;
+            core = smaller;
+        }
+        return core;
+    }
+
+    /*
+     * @return the total weight of the soft clauses model violates
+     */
+    private long costOf(boolean[] model) {
+        long total = emptyCost;
+        int i = 0;
+        for (int c = 0; c < soft.end(); c = soft.next(c), i++) {
+            boolean satisfied = false;
+            for (int k = 0; k < soft.size(c) && !satisfied; k++) {
+                int lit = soft.lit(c, k);
+                satisfied = model[Lit.var(lit)] != Lit.isNegative(lit);
+            }
+            if (!satisfied && soft.size(c) > 0) total += weights[i];
+        }
+        return total;
+    }
+}
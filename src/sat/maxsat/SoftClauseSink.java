@@ -0,0 +1,14 @@
+package sat.maxsat;
+
+/**
+ * Something that weighted soft clauses of integer-encoded literals can be
+ * streamed into, such as a MaxSatSolver being filled by a parser.
+ */
+public interface SoftClauseSink {
+    /**
+     * Add the soft clause lits[from..from+length), whose violation costs
+     * weight. The sink must copy the literals if it keeps them, since the
+     * caller may reuse the array.
+     */
+    void addSoftClause(int[] lits, int from, int length, long weight);
+}
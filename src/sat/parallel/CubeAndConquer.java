@@ -0,0 +1,241 @@
+package sat.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.PbConstraint;
+import sat.cdcl.Result;
+import sat.env.Environment;
+import sat.formula.Formula;
+
+/**
+ * Cube-and-conquer parallel solving.
+ *
+ * The search space is split like the two branches of SATSolver's DPLL
+ * search: a task holding a cube (a partial assignment) picks a branching
+ * variable by lookahead and forks one task with the variable true and one
+ * with it false. Once a cube is deep enough, it is conquered by a
+ * CDCLSolver with the cube's literals added as unit clauses. Tasks run in
+ * a ForkJoinPool, so idle workers steal the unexplored halves of other
+ * workers' cubes and the load balances itself however uneven the cubes
+ * turn out.
+ *
+ * Lookahead propagates both values of each of the most frequently
+ * occurring free variables and picks the one whose two branches together
+ * assign the most (the product of their counts, so that both branches have
+ * to simplify). A value whose propagation conflicts is a failed literal:
+ * its negation is added to the cube, and so to the cubes of both
+ * children, and lookahead carries on.
+ *
+ * Pseudo-Boolean constraints need no encoding: lookahead and conquest both
+ * run on CDCLSolver, which propagates them, and their literals count
+ * towards the occurrences that rank the candidates.
+ */
+public class CubeAndConquer {
+    // number of free variables looked ahead on at each split
+    private static final int CANDIDATES = 64;
+
+    private final int parallelism;
+    private final int depth;
+
+    /**
+     * Create a solver using every available processor.
+     */
+    public CubeAndConquer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a solver whose cubes have about 8 times as many leaves as
+     * there are workers, enough for work stealing to even out the load.
+     * Requires: parallelism > 0
+     */
+    public CubeAndConquer(int parallelism) {
+        this(parallelism, 3 + 32 - Integer.numberOfLeadingZeros(parallelism));
+    }
+
+    /**
+     * Requires: parallelism > 0 and depth >= 0
+     * @param depth maximum number of branching variables in a cube
+     */
+    public CubeAndConquer(int parallelism, int depth) {
+        this.parallelism = parallelism;
+        this.depth = depth;
+    }
+
+    /**
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public Environment solve(Formula formula) {
+        IntFormula f = IntFormula.encode(formula);
+        boolean[] model = solve(f);
+        return model == null ? null : f.toEnvironment(model);
+    }
+
+    /**
+     * @return a satisfying assignment, model[v] true iff variable v is true,
+     *         or null if none exists
+     */
+    public boolean[] solve(IntFormula formula) {
+        Search search = new Search(formula);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new CubeTask(search, new int[0], 0));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * State shared by all the tasks of one solve.
+     */
+    private static class Search {
+        final IntFormula formula;
+        // variables in decreasing order of occurrences, as lookahead candidates
+        final int[] byOccurrences;
+        final AtomicBoolean found = new AtomicBoolean();
+        final Set<CDCLSolver> running = ConcurrentHashMap.newKeySet();
+
+        Search(IntFormula formula) {
+            this.formula = formula;
+            int n = formula.numVars();
+            final int[] occurrences = new int[n];
+            ClauseArena clauses = formula.getClauses();
+            for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+                for (int i = 0; i < clauses.size(c); i++) {
+                    occurrences[Lit.var(clauses.lit(c, i))]++;
+                }
+            }
+            for (PbConstraint c : formula.getConstraints()) {
+                for (int i = 0; i < c.size(); i++) {
+                    occurrences[Lit.var(c.lit(i))]++;
+                }
+            }
+            Integer[] order = new Integer[n];
+            for (int v = 0; v < n; v++) {
+                order[v] = v;
+            }
+            Arrays.sort(order, (a, b) -> occurrences[b] - occurrences[a]);
+            byOccurrences = new int[n];
+            for (int v = 0; v < n; v++) {
+                byOccurrences[v] = order[v];
+            }
+        }
+
+        /*
+         * Stop every other task once a model has been found.
+         */
+        void modelFound() {
+            found.set(true);
+            for (CDCLSolver solver : running) {
+                solver.interrupt();
+            }
+        }
+    }
+
+    private class CubeTask extends RecursiveTask<boolean[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int[] cube;
+        private final int level;
+
+        CubeTask(Search search, int[] cube, int level) {
+            this.search = search;
+            this.cube = cube;
+            this.level = level;
+        }
+
+        @Override
+        protected boolean[] compute() {
+            if (search.found.get()) return null;
+            CDCLSolver solver = new CDCLSolver(search.formula);
+            for (int lit : cube) {
+                solver.addClause(new int[] { lit }, 0, 1);
+            }
+            if (!solver.isOk()) return null;
+
+            ArrayList<Integer> units = new ArrayList<Integer>();
+            int branch = level < depth ? lookahead(solver, units) : -1;
+            if (!solver.isOk()) return null;
+            if (branch < 0) return conquer(solver);
+
+            // the children inherit the negated failed literals
+            int size = cube.length + units.size();
+            int[] left = Arrays.copyOf(cube, size + 1);
+            for (int i = 0; i < units.size(); i++) {
+                left[cube.length + i] = units.get(i);
+            }
+            int[] right = left.clone();
+            left[size] = branch;
+            right[size] = Lit.not(branch);
+            CubeTask other = new CubeTask(search, right, level + 1);
+            other.fork();
+            boolean[] model = new CubeTask(search, left, level + 1).compute();
+            boolean[] otherModel = other.join();
+            return model != null ? model : otherModel;
+        }
+
+        /*
+         * Pick the literal to branch on, adding the negation of every failed
+         * literal met to the solver and to units. Returns -1 if no free
+         * candidate is left.
+         */
+        private int lookahead(CDCLSolver solver, ArrayList<Integer> units) {
+            int best = -1;
+            long bestScore = -1;
+            int tried = 0;
+            for (int var : search.byOccurrences) {
+                if (tried == CANDIDATES || !solver.isOk()) break;
+                if (solver.isAssigned(var)) continue;
+                tried++;
+                int pos = Lit.make(var, false);
+                int neg = Lit.make(var, true);
+                int posCount = solver.probe(pos);
+                if (posCount < 0) {
+                    solver.addClause(new int[] { neg }, 0, 1);
+                    units.add(neg);
+                    continue;
+                }
+                int negCount = solver.probe(neg);
+                if (negCount < 0) {
+                    solver.addClause(new int[] { pos }, 0, 1);
+                    units.add(pos);
+                    continue;
+                }
+                long score = (long) posCount * negCount;
+                if (score > bestScore) {
+                    bestScore = score;
+                    // explore the branch that assigns more first
+                    best = posCount >= negCount ? pos : neg;
+                }
+            }
+            // failed literals may have assigned the chosen variable since
+            if (best >= 0 && solver.isAssigned(Lit.var(best))) return -1;
+            return best;
+        }
+
+        private boolean[] conquer(CDCLSolver solver) {
+            search.running.add(solver);
+            try {
+                if (search.found.get()) return null;
+                Result result = solver.search();
+                if (result != Result.SAT) return null;
+                search.modelFound();
+                return solver.model();
+            } finally {
+                search.running.remove(solver);
+            }
+        }
+    }
+}
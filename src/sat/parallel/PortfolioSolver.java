@@ -0,0 +1,163 @@
+package sat.parallel;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import sat.cdcl.CDCLSolver;
+import sat.cdcl.ClauseExchange;
+import sat.cdcl.GeometricRestarts;
+import sat.cdcl.GlucoseRestarts;
+import sat.cdcl.IntFormula;
+import sat.cdcl.LubyRestarts;
+import sat.cdcl.Result;
+import sat.cdcl.VsidsHeuristic;
+import sat.env.Environment;
+import sat.formula.Formula;
+
+/**
+ * Portfolio parallel solving: several differently configured CDCLSolvers
+ * race on the same formula, each on its own thread. The first to reach an
+ * answer wins and the others are interrupted.
+ *
+ * Workers differ in random seed, VSIDS decay, restart policy and initial
+ * phase, so their searches diverge quickly. Learnt clauses of at most
+ * SHARE_SIZE literals are passed between them through a ClauseExchange.
+ */
+public class PortfolioSolver {
+    private static final int SHARE_SIZE = 8;
+    private static final int EXCHANGE_CAPACITY = 1 << 14;
+
+    private final int workers;
+
+    /*
+     * What a worker hands back: its solver and how its search ended.
+     */
+    private static class Outcome {
+        final CDCLSolver solver;
+        final Result result;
+
+        Outcome(CDCLSolver solver, Result result) {
+            this.solver = solver;
+            this.result = result;
+        }
+    }
+
+    /**
+     * Create a portfolio that runs one worker per available processor.
+     */
+    public PortfolioSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Requires: workers > 0
+     */
+    public PortfolioSolver(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * @return an environment for which the problem evaluates to Bool.TRUE, or
+     *         null if no such environment exists.
+     */
+    public Environment solve(Formula formula) {
+        IntFormula f = IntFormula.encode(formula);
+        boolean[] model = solve(f);
+        return model == null ? null : f.toEnvironment(model);
+    }
+
+    /**
+     * @return a satisfying assignment, model[v] true iff variable v is true,
+     *         or null if none exists
+     */
+    public boolean[] solve(final IntFormula formula) {
+        final ClauseExchange exchange = new ClauseExchange(EXCHANGE_CAPACITY);
+        final CDCLSolver[] solvers = new CDCLSolver[workers];
+        // set, under the lock on solvers, once no more searching is wanted
+        final AtomicBoolean finished = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        ExecutorCompletionService<Outcome> done = new ExecutorCompletionService<Outcome>(pool);
+
+        for (int i = 0; i < workers; i++) {
+            final int id = i;
+            // build each solver on its own thread too
+            done.submit(new Callable<Outcome>() {
+                public Outcome call() {
+                    CDCLSolver solver = configure(formula, id);
+                    solver.shareClauses(exchange, id, SHARE_SIZE);
+                    synchronized (solvers) {
+                        solvers[id] = solver;
+                        // too late: the race was decided while building
+                        if (finished.get()) solver.interrupt();
+                    }
+                    return new Outcome(solver, solver.search());
+                }
+            });
+        }
+
+        try {
+            for (int i = 0; i < workers; i++) {
+                Outcome outcome = done.take().get();
+                if (outcome.result == Result.UNKNOWN) continue;
+                return outcome.result == Result.SAT ? outcome.solver.model() : null;
+            }
+            throw new IllegalStateException("every portfolio worker was interrupted");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for portfolio workers", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("portfolio worker failed", e.getCause());
+        } finally {
+            // CDCLSolver does not heed thread interrupts, so shutdownNow
+            // alone would leave the losers searching
+            synchronized (solvers) {
+                finished.set(true);
+                for (CDCLSolver s : solvers) {
+                    if (s != null) s.interrupt();
+                }
+            }
+            pool.shutdownNow();
+        }
+    }
+
+    /*
+     * Worker id's configuration. Worker 0 uses the solver's defaults; the
+     * others cycle through restart policies and initial phases, with their
+     * own seed and decay.
+     */
+    private static CDCLSolver configure(IntFormula formula, int id) {
+        CDCLSolver solver = new CDCLSolver(formula);
+        if (id == 0) return solver;
+
+        Random random = new Random(id);
+        double[] decays = { 0.95, 0.85, 0.99, 0.9 };
+        solver.setHeuristic(new VsidsHeuristic(decays[id % decays.length], random));
+
+        switch (id % 4) {
+            case 0:
+                solver.setRestartPolicy(new LubyRestarts(100));
+                break;
+            case 1:
+                solver.setRestartPolicy(new GlucoseRestarts());
+                break;
+            case 2:
+                solver.setRestartPolicy(new GeometricRestarts(100, 1.5));
+                break;
+            default:
+                solver.setRestartPolicy(new LubyRestarts(512));
+                break;
+        }
+
+        int phase = (id / 4) % 3;
+        for (int var = 0; var < solver.numVars(); var++) {
+            if (phase == 1) solver.setPhase(var, true);
+            else if (phase == 2) solver.setPhase(var, random.nextBoolean());
+        }
+        return solver;
+    }
+}
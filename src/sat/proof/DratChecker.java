@@ -0,0 +1,324 @@
+package sat.proof;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.cdcl.Trail;
+import sat.cdcl.Watches;
+
+/**
+ * Checks a binary DRAT proof, as written by DratWriter, that a formula is
+ * unsatisfiable.
+ *
+ * The proof is checked forwards: each added clause must be RUP (assuming
+ * all its literals false and propagating leads to a conflict) or RAT on its
+ * first literal (every resolvent on that literal is RUP), with respect to
+ * the formula and the clauses added and not deleted before it. The proof
+ * is valid if the clauses become contradictory by unit propagation alone,
+ * which the empty clause at its end asserts.
+ *
+ * Like drat-trim, deleting a unit clause is ignored, and so is deleting a
+ * clause that was never added. Assignments at level 0 are kept even if the
+ * clause that implied them is deleted later.
+ *
+ * Meant for tests: propagation is the solver's, but looking for RAT
+ * candidates scans every clause.
+ */
+public class DratChecker {
+    private static final int NO_REASON = Trail.NO_REASON;
+
+    private final ClauseArena clauses = new ClauseArena();
+    private final HashMap<Key, ArrayList<Integer>> index = new HashMap<Key, ArrayList<Integer>>();
+    private final Trail trail;
+    private final Watches watches;
+    private int qhead;
+    // true once propagation at level 0 has found a conflict
+    private boolean inconsistent;
+
+    /*
+     * Rep invariant:
+     *     every clause in clauses that is not deleted and not satisfied at
+     *     level 0 is watched by its first two literals, which are not
+     *     false at level 0
+     *     index maps the sorted literals of every clause not deleted to
+     *     its references
+     */
+
+    /*
+     * The literals of a clause, sorted, as a hash key.
+     */
+    private static final class Key {
+        final int[] lits;
+        final int hash;
+
+        Key(int[] sorted) {
+            lits = sorted;
+            hash = Arrays.hashCode(sorted);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(lits, ((Key) o).lits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private DratChecker(int numVars) {
+        trail = new Trail(numVars);
+        watches = new Watches(2 * numVars);
+    }
+
+    /**
+     * @return true iff the binary DRAT proof in proofFile shows formula to
+     *         be unsatisfiable
+     * @throws IOException if proofFile cannot be read or is malformed
+     * @throws IllegalArgumentException if formula has constraints, which
+     *         DRAT proofs cannot refer to
+     */
+    public static boolean check(IntFormula formula, String proofFile) throws IOException {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("DRAT proofs cover clauses only");
+        }
+        DratChecker checker = new DratChecker(formula.numVars());
+        ClauseArena input = formula.getClauses();
+        for (int c = 0; c < input.end(); c = input.next(c)) {
+            checker.add(input.toArray(c));
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(proofFile)), 1 << 16)) {
+            return checker.replay(in);
+        }
+    }
+
+    private boolean replay(InputStream in) throws IOException {
+        int[] lits = new int[16];
+        long offset = 0;
+        while (true) {
+            int kind = in.read();
+            if (kind < 0) return inconsistent;
+            if (kind != 'a' && kind != 'd') {
+                throw new IOException("DRAT: expected 'a' or 'd' at byte " + offset);
+            }
+            offset++;
+            int size = 0;
+            while (true) {
+                int n = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = in.read();
+                    if (b < 0) throw new IOException("DRAT: unexpected end of proof at byte " + offset);
+                    offset++;
+                    n |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                if (n == 0) break;
+                if (n < 2) throw new IOException("DRAT: bad literal at byte " + offset);
+                if (size == lits.length) lits = Arrays.copyOf(lits, size * 2);
+                lits[size++] = n - 2;
+            }
+
+            int[] clause = Arrays.copyOf(lits, size);
+            if (kind == 'd') {
+                delete(clause);
+            } else {
+                if (!implied(clause)) return false;
+                add(clause);
+                if (inconsistent) return true;
+            }
+        }
+    }
+
+    /*
+     * Add a clause at level 0, which must be current.
+     */
+    private void add(int[] lits) {
+        for (int lit : lits) {
+            ensureVars(Lit.var(lit) + 1);
+        }
+        int[] sorted = sortedUnique(lits);
+        int cref = clauses.add(sorted);
+        index.computeIfAbsent(new Key(sorted), k -> new ArrayList<Integer>()).add(cref);
+        if (inconsistent) return;
+
+        // move two literals that are not false to the front
+        int free = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            int lit = clauses.lit(cref, i);
+            byte value = trail.valueOf(lit);
+            // satisfied at level 0 for good, so never needs watching
+            if (value == Trail.TRUE) return;
+            if (value == Trail.UNASSIGNED && free < 2) {
+                clauses.setLit(cref, i, clauses.lit(cref, free));
+                clauses.setLit(cref, free++, lit);
+            }
+        }
+        if (free == 0) {
+            inconsistent = true;
+        } else if (free == 1) {
+            trail.assign(clauses.lit(cref, 0), NO_REASON);
+            if (propagate() != NO_REASON) inconsistent = true;
+        } else {
+            watches.watch(clauses.lit(cref, 0), cref, clauses.lit(cref, 1));
+            watches.watch(clauses.lit(cref, 1), cref, clauses.lit(cref, 0));
+        }
+    }
+
+    private void delete(int[] lits) {
+        if (lits.length <= 1) return;
+        ArrayList<Integer> crefs = index.get(new Key(sortedUnique(lits)));
+        if (crefs == null || crefs.isEmpty()) return;
+        clauses.markDeleted(crefs.remove(crefs.size() - 1));
+    }
+
+    /*
+     * @return true iff lits is RUP, or RAT on its first literal
+     */
+    private boolean implied(int[] lits) {
+        if (inconsistent) return true;
+        for (int lit : lits) {
+            ensureVars(Lit.var(lit) + 1);
+        }
+        trail.newDecisionLevel();
+        if (assignNegations(lits, -1) || propagate() != NO_REASON) {
+            backtrack(0);
+            return true;
+        }
+        if (lits.length == 0) {
+            backtrack(0);
+            return false;
+        }
+
+        int pivot = lits[0];
+        int notPivot = Lit.not(pivot);
+        for (int c = 0; c < clauses.end(); c = clauses.next(c)) {
+            if (clauses.isDeleted(c) || !contains(c, notPivot)) continue;
+            trail.newDecisionLevel();
+            boolean conflict = assignNegations(clauses.toArray(c), notPivot) || propagate() != NO_REASON;
+            backtrack(1);
+            if (!conflict) {
+                backtrack(0);
+                return false;
+            }
+        }
+        backtrack(0);
+        return true;
+    }
+
+    /*
+     * Assign the negation of every literal of lits except skip.
+     * @return true iff one of those literals is already true
+     */
+    private boolean assignNegations(int[] lits, int skip) {
+        for (int lit : lits) {
+            if (lit == skip) continue;
+            byte value = trail.valueOf(lit);
+            if (value == Trail.TRUE) return true;
+            if (value == Trail.UNASSIGNED) trail.assign(Lit.not(lit), NO_REASON);
+        }
+        return false;
+    }
+
+    private boolean contains(int cref, int lit) {
+        for (int i = 0; i < clauses.size(cref); i++) {
+            if (clauses.lit(cref, i) == lit) return true;
+        }
+        return false;
+    }
+
+    private void backtrack(int level) {
+        trail.cancelUntil(level);
+        qhead = trail.size();
+    }
+
+    private void ensureVars(int numVars) {
+        trail.ensureVars(numVars);
+        watches.ensureLiterals(2 * numVars);
+    }
+
+    private static int[] sortedUnique(int[] lits) {
+        int[] sorted = lits.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) sorted[size++] = sorted[i];
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    /*
+     * Unit propagation as in CDCLSolver, dropping the watches of deleted
+     * clauses as they are met.
+     * @return reference of a conflicting clause, or NO_REASON
+     */
+    private int propagate() {
+        int[] data = clauses.data();
+        while (qhead < trail.size()) {
+            int falseLit = Lit.not(trail.get(qhead++));
+            int[] ws = watches.list(falseLit);
+            int n = watches.size(falseLit);
+            int i = 0;
+            int j = 0;
+            while (i < n) {
+                int cref = ws[i];
+                int blocker = ws[i + 1];
+                i += 2;
+                if (clauses.isDeleted(cref)) continue;
+                if (trail.valueOf(blocker) == Trail.TRUE) {
+                    ws[j++] = cref;
+                    ws[j++] = blocker;
+                    continue;
+                }
+
+                int lits = cref + ClauseArena.HEADER;
+                if (data[lits] == falseLit) {
+                    data[lits] = data[lits + 1];
+                    data[lits + 1] = falseLit;
+                }
+                int first = data[lits];
+                if (first != blocker && trail.valueOf(first) == Trail.TRUE) {
+                    ws[j++] = cref;
+                    ws[j++] = first;
+                    continue;
+                }
+
+                boolean moved = false;
+                int end = lits + data[cref];
+                for (int k = lits + 2; k < end; k++) {
+                    if (trail.valueOf(data[k]) != Trail.FALSE) {
+                        data[lits + 1] = data[k];
+                        data[k] = falseLit;
+                        watches.watch(data[lits + 1], cref, first);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) continue;
+
+                ws[j++] = cref;
+                ws[j++] = first;
+                if (trail.valueOf(first) == Trail.FALSE) {
+                    while (i < n) ws[j++] = ws[i++];
+                    watches.shrink(falseLit, j);
+                    qhead = trail.size();
+                    return cref;
+                }
+                trail.assign(first, cref);
+            }
+            watches.shrink(falseLit, j);
+        }
+        return NO_REASON;
+    }
+}
@@ -0,0 +1,166 @@
+package sat.proof;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import sat.cdcl.ProofLog;
+
+/**
+ * Writes a proof in binary DRAT format to a file.
+ *
+ * Each step is 'a' (add) or 'd' (delete) followed by the literals of the
+ * clause and a terminating 0. A literal of variable v (numbered from 0) is
+ * written as the unsigned number 2(v+1), plus 1 if it is negative, in
+ * 7-bit groups, least significant first, with the high bit set on all but
+ * the last group. With the encoding of Lit, that number is just lit + 2.
+ *
+ * Steps are encoded into direct buffers on the solver's thread, and full
+ * buffers are written to the file by a background thread. The solver never
+ * waits for the disk: if every buffer is still queued for writing, a new
+ * one is allocated.
+ */
+public class DratWriter implements ProofLog, Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    // size of the first buffer, so that short proofs cost little to set up
+    private static final int FIRST_BUFFER_SIZE = 1 << 14;
+    // longest encoding of a literal: 5 groups of 7 bits
+    private static final int MAX_LIT_BYTES = 5;
+
+    private final FileChannel channel;
+    // started when the first buffer fills up
+    private Thread flusher;
+    // full buffers waiting to be written, and an empty one to end the queue
+    private final LinkedBlockingQueue<ByteBuffer> full = new LinkedBlockingQueue<ByteBuffer>();
+    // written buffers, ready to be refilled
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<ByteBuffer>();
+    private ByteBuffer current = ByteBuffer.allocateDirect(FIRST_BUFFER_SIZE);
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Create the file, replacing any existing one, and start writing to it.
+     */
+    public DratWriter(String file) throws IOException {
+        this(Paths.get(file));
+    }
+
+    /**
+     * Create the file, replacing any existing one, and start writing to it.
+     */
+    public DratWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void add(int[] lits, int from, int length) {
+        step('a', lits, from, length);
+    }
+
+    @Override
+    public void delete(int[] lits, int from, int length) {
+        step('d', lits, from, length);
+    }
+
+    /**
+     * Write out every step and close the file.
+     * @throws IOException if writing any step failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (flusher == null) {
+            // a short proof that never filled a buffer: write it here
+            try {
+                current.flip();
+                while (current.hasRemaining()) {
+                    channel.write(current);
+                }
+            } finally {
+                channel.close();
+            }
+            return;
+        }
+        if (current.position() > 0) full.add(current);
+        full.add(ByteBuffer.allocate(0));
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing the proof", e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void step(char kind, int[] lits, int from, int length) {
+        if (closed) throw new IllegalStateException("proof already closed");
+        ByteBuffer out = reserve(2 + length * MAX_LIT_BYTES);
+        out.put((byte) kind);
+        for (int i = from; i < from + length; i++) {
+            int n = lits[i] + 2;
+            while ((n & ~0x7f) != 0) {
+                out.put((byte) ((n & 0x7f) | 0x80));
+                n >>>= 7;
+            }
+            out.put((byte) n);
+        }
+        out.put((byte) 0);
+    }
+
+    /*
+     * @return a buffer with at least the given number of bytes remaining,
+     *         handing the current one to the flusher if it is too full
+     */
+    private ByteBuffer reserve(int bytes) {
+        if (current.remaining() >= bytes) return current;
+        if (flusher == null) {
+            flusher = new Thread(this::flush, "drat-writer");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        if (current.position() > 0) full.add(current);
+        ByteBuffer next = free.poll();
+        if (next == null || next.capacity() < bytes) {
+            next = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, bytes));
+        }
+        current = next;
+        return current;
+    }
+
+    /*
+     * Body of the background thread: write buffers until the empty one.
+     */
+    private void flush() {
+        while (true) {
+            ByteBuffer buffer;
+            try {
+                buffer = full.take();
+            } catch (InterruptedException e) {
+                failure = new IOException("proof writer interrupted", e);
+                return;
+            }
+            if (buffer.capacity() == 0) return;
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                // keep draining so that close() does not hang
+                if (failure == null) failure = e;
+            }
+            buffer.clear();
+            free.add(buffer);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package sat.sls;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import sat.cdcl.ClauseArena;
+import sat.cdcl.IntFormula;
+import sat.cdcl.Lit;
+import sat.encoding.ConstraintEncoder;
+import sat.formula.Formula;
+
+/**
+ * Stochastic local search for satisfiable formulas.
+ *
+ * Starts from a complete assignment and repeatedly flips one variable of a
+ * random unsatisfied clause until no clause is unsatisfied. The variable is
+ * chosen by its break count, the number of clauses that are satisfied only
+ * by it and so would become unsatisfied by the flip:
+ *   WALKSAT flips a variable of break count 0 if there is one, otherwise a
+ *   random variable with probability noise, and one of least break count
+ *   the rest of the time.
+ *   PROBSAT flips each variable with probability proportional to
+ *   (EPSILON + break)^-cb.
+ *
+ * Break counts, the number of true literals of each clause and the list of
+ * unsatisfied clauses are updated as variables flip, so a flip costs time
+ * proportional to the occurrences of the flipped variable, not to the size
+ * of the formula.
+ *
+ * Local search is incomplete: it can find a solution, but never shows that
+ * there is none. Its best assignment is a good initial phase for a complete
+ * solver such as CDCLSolver.
+ */
+public class LocalSearch {
+
+    /**
+     * How the variable to flip is picked from an unsatisfied clause.
+     */
+    public enum Heuristic {
+        WALKSAT, PROBSAT
+    }
+
+    private static final double EPSILON = 1.0;
+    // break counts at least this large share the probability of the last one
+    private static final int PROBABILITY_TABLE_SIZE = 64;
+
+    private final int numVars;
+    private final int numClauses;
+    // literals of clause c are lits[clauseStart[c]..clauseStart[c+1])
+    private final int[] clauseStart;
+    private final int[] lits;
+    // clauses containing literal l are occurrences[occurrenceStart[l]..occurrenceStart[l+1])
+    private final int[] occurrenceStart;
+    private final int[] occurrences;
+    // true if some clause is empty, so that no assignment satisfies it
+    private final boolean hasEmptyClause;
+
+    private final boolean[] assignment;
+    private final int[] numTrue;
+    // xor of the variables of the true literals of each clause: the one
+    // true variable when numTrue is 1
+    private final int[] trueVars;
+    private final int[] breaks;
+    private final int[] unsat;
+    private final int[] unsatIndex;
+    private int numUnsat;
+
+    private boolean[] best;
+    private int bestUnsat;
+    private long flips;
+
+    private final Random random;
+    private Heuristic heuristic = Heuristic.PROBSAT;
+    private double noise = 0.5;
+    private double[] probabilities;
+    private double[] scratch;
+    private volatile boolean interrupted;
+
+    /*
+     * Rep invariant:
+     *     no clause contains a variable twice
+     *     numTrue[c] is the number of literals of clause c true under
+     *     assignment, and trueVars[c] the xor of their variables
+     *     breaks[v] is the number of clauses whose only true literal is
+     *     over v
+     *     unsat[0..numUnsat) are exactly the clauses with numTrue 0, and
+     *     unsatIndex[unsat[i]] == i
+     *     bestUnsat is the number of clauses best leaves unsatisfied
+     */
+
+    /**
+     * Create a search for the given formula, starting from a random
+     * assignment. Constraints are searched as their clauses from
+     * ConstraintEncoder, whose fresh variables come after those of formula.
+     * Requires: formula is non-null
+     */
+    public LocalSearch(Formula formula) {
+        this(ConstraintEncoder.toCnf(IntFormula.encode(formula)), new Random());
+    }
+
+    /**
+     * Create a search for the given formula, starting from an assignment
+     * drawn from random. The formula is not modified.
+     * Requires: formula and random are non-null, and formula has no
+     *           constraints
+     * @throws IllegalArgumentException if formula has constraints
+     */
+    public LocalSearch(IntFormula formula, Random random) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("local search takes clauses only; encode the constraints first");
+        }
+        this.random = random;
+        numVars = formula.numVars();
+        ClauseArena input = formula.getClauses();
+
+        // copy the clauses, dropping tautologies and repeated literals
+        int[] starts = new int[input.count() + 1];
+        int[] flat = new int[input.end()];
+        int[] mark = new int[numVars];
+        int kept = 0;
+        int size = 0;
+        boolean empty = false;
+        for (int c = 0; c < input.end(); c = input.next(c)) {
+            int start = size;
+            boolean tautology = false;
+            for (int i = 0; i < input.size(c) && !tautology; i++) {
+                int lit = input.lit(c, i);
+                int var = Lit.var(lit);
+                // mark[var] is the literal plus one if this clause has var
+                if (mark[var] == 0) {
+                    mark[var] = lit + 1;
+                    flat[size++] = lit;
+                } else if (mark[var] != lit + 1) {
+                    tautology = true;
+                }
+            }
+            for (int i = start; i < size; i++) {
+                mark[Lit.var(flat[i])] = 0;
+            }
+            if (tautology) {
+                size = start;
+                continue;
+            }
+            if (size == start) empty = true;
+            starts[++kept] = size;
+        }
+        numClauses = kept;
+        clauseStart = Arrays.copyOf(starts, kept + 1);
+        lits = Arrays.copyOf(flat, size);
+        hasEmptyClause = empty;
+
+        occurrenceStart = new int[2 * numVars + 1];
+        for (int lit : lits) {
+            occurrenceStart[lit + 1]++;
+        }
+        for (int l = 0; l < 2 * numVars; l++) {
+            occurrenceStart[l + 1] += occurrenceStart[l];
+        }
+        occurrences = new int[lits.length];
+        int[] fill = Arrays.copyOf(occurrenceStart, 2 * numVars);
+        for (int c = 0; c < numClauses; c++) {
+            for (int i = clauseStart[c]; i < clauseStart[c + 1]; i++) {
+                occurrences[fill[lits[i]]++] = c;
+            }
+        }
+
+        assignment = new boolean[numVars];
+        numTrue = new int[numClauses];
+        trueVars = new int[numClauses];
+        breaks = new int[numVars];
+        unsat = new int[numClauses];
+        unsatIndex = new int[numClauses];
+        scratch = new double[16];
+        setCb(2.3);
+        for (int var = 0; var < numVars; var++) {
+            assignment[var] = random.nextBoolean();
+        }
+        reset(assignment);
+    }
+
+    /**
+     * Choose how variables to flip are picked, PROBSAT by default.
+     */
+    public void setHeuristic(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Set the probability that WALKSAT makes a random flip when every
+     * variable of the clause has a positive break count, 0.5 by default.
+     * Requires: 0 <= noise <= 1
+     */
+    public void setNoise(double noise) {
+        this.noise = noise;
+    }
+
+    /**
+     * Set the exponent by which PROBSAT penalizes break counts, 2.3 by
+     * default, which suits random 3-SAT; longer clauses want larger values.
+     * Requires: cb > 0
+     */
+    public void setCb(double cb) {
+        probabilities = new double[PROBABILITY_TABLE_SIZE];
+        for (int b = 0; b < PROBABILITY_TABLE_SIZE; b++) {
+            probabilities[b] = Math.pow(EPSILON + b, -cb);
+        }
+    }
+
+    /**
+     * Restart the search from the given assignment.
+     * Requires: start.length == numVars()
+     */
+    public void reset(boolean[] start) {
+        if (start != assignment) System.arraycopy(start, 0, assignment, 0, numVars);
+        Arrays.fill(numTrue, 0);
+        Arrays.fill(trueVars, 0);
+        Arrays.fill(breaks, 0);
+        numUnsat = 0;
+        for (int c = 0; c < numClauses; c++) {
+            for (int i = clauseStart[c]; i < clauseStart[c + 1]; i++) {
+                if (isTrue(lits[i])) {
+                    numTrue[c]++;
+                    trueVars[c] ^= Lit.var(lits[i]);
+                }
+            }
+            if (numTrue[c] == 0) {
+                addUnsat(c);
+            } else if (numTrue[c] == 1) {
+                breaks[trueVars[c]]++;
+            }
+        }
+        best = assignment.clone();
+        bestUnsat = numUnsat;
+    }
+
+    /**
+     * Stop a search running on another thread as soon as possible.
+     */
+    public void interrupt() {
+        interrupted = true;
+    }
+
+    /**
+     * Flip variables until every clause is satisfied, at most maxFlips
+     * times, continuing from where the last call stopped.
+     * @return a satisfying assignment, model[v] true iff variable v is
+     *         true, or null if none was found
+     */
+    public boolean[] solve(long maxFlips) {
+        if (hasEmptyClause) return null;
+        for (long i = 0; i < maxFlips && numUnsat > 0 && !interrupted; i++) {
+            int c = unsat[random.nextInt(numUnsat)];
+            flip(heuristic == Heuristic.WALKSAT ? pickWalkSat(c) : pickProbSat(c));
+            if (numUnsat < bestUnsat) {
+                bestUnsat = numUnsat;
+                System.arraycopy(assignment, 0, best, 0, numVars);
+            }
+        }
+        return numUnsat == 0 ? assignment.clone() : null;
+    }
+
+    /**
+     * @return the assignment leaving the fewest clauses unsatisfied of all
+     *         those seen since the last reset
+     */
+    public boolean[] bestAssignment() {
+        return best.clone();
+    }
+
+    /**
+     * @return number of clauses left unsatisfied by bestAssignment()
+     */
+    public int bestUnsat() {
+        return bestUnsat;
+    }
+
+    /**
+     * @return number of clauses the current assignment leaves unsatisfied
+     */
+    public int numUnsat() {
+        return numUnsat;
+    }
+
+    /**
+     * @return number of variables flipped so far
+     */
+    public long numFlips() {
+        return flips;
+    }
+
+    /**
+     * @return number of variables
+     */
+    public int numVars() {
+        return numVars;
+    }
+
+    private boolean isTrue(int lit) {
+        return assignment[Lit.var(lit)] != Lit.isNegative(lit);
+    }
+
+    private int pickWalkSat(int c) {
+        int start = clauseStart[c];
+        int end = clauseStart[c + 1];
+        int bestVar = -1;
+        int bestBreak = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int i = start; i < end; i++) {
+            int var = Lit.var(lits[i]);
+            int b = breaks[var];
+            if (b < bestBreak) {
+                bestBreak = b;
+                bestVar = var;
+                ties = 1;
+            } else if (b == bestBreak && random.nextInt(++ties) == 0) {
+                // reservoir sampling keeps every tie equally likely
+                bestVar = var;
+            }
+        }
+        if (bestBreak > 0 && random.nextDouble() < noise) {
+            return Lit.var(lits[start + random.nextInt(end - start)]);
+        }
+        return bestVar;
+    }
+
+    private int pickProbSat(int c) {
+        int start = clauseStart[c];
+        int size = clauseStart[c + 1] - start;
+        if (size > scratch.length) scratch = new double[Math.max(size, 2 * scratch.length)];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            int b = breaks[Lit.var(lits[start + i])];
+            sum += probabilities[Math.min(b, PROBABILITY_TABLE_SIZE - 1)];
+            scratch[i] = sum;
+        }
+        double r = random.nextDouble() * sum;
+        for (int i = 0; i < size - 1; i++) {
+            if (r < scratch[i]) return Lit.var(lits[start + i]);
+        }
+        return Lit.var(lits[start + size - 1]);
+    }
+
+    /*
+     * Flip var, updating numTrue, trueVars, breaks and the unsat list of
+     * the clauses it occurs in.
+     */
+    private void flip(int var) {
+        flips++;
+        assignment[var] = !assignment[var];
+        int madeTrue = Lit.make(var, !assignment[var]);
+        int madeFalse = Lit.not(madeTrue);
+
+        for (int k = occurrenceStart[madeTrue]; k < occurrenceStart[madeTrue + 1]; k++) {
+            int c = occurrences[k];
+            int n = numTrue[c]++;
+            if (n == 0) {
+                removeUnsat(c);
+                breaks[var]++;
+            } else if (n == 1) {
+                // the old only true literal is no longer critical
+                breaks[trueVars[c]]--;
+            }
+            trueVars[c] ^= var;
+        }
+        for (int k = occurrenceStart[madeFalse]; k < occurrenceStart[madeFalse + 1]; k++) {
+            int c = occurrences[k];
+            int n = --numTrue[c];
+            trueVars[c] ^= var;
+            if (n == 0) {
+                addUnsat(c);
+                breaks[var]--;
+            } else if (n == 1) {
+                breaks[trueVars[c]]++;
+            }
+        }
+    }
+
+    private void addUnsat(int c) {
+        unsatIndex[c] = numUnsat;
+        unsat[numUnsat++] = c;
+    }
+
+    private void removeUnsat(int c) {
+        // move the last clause of the list into c's place
+        int last = unsat[--numUnsat];
+        unsat[unsatIndex[c]] = last;
+        unsatIndex[last] = unsatIndex[c];
+    }
+}